@@ -0,0 +1,223 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+/**
+ * Level of detail decorator of a LayoutAlgorithm: the items which area is
+ * below a minimum are grouped into a single aggregate tile, laid out by the
+ * decorated algorithm along with the visible items.
+ *
+ * Finding the aggregated items takes a single pass, the decorated algorithm
+ * then only sorts and lays out the visible items, so that the layout cost
+ * depends on the number of items large enough to be seen rather than on the
+ * number of items. The aggregated items are given an empty bounds at the
+ * position of the aggregate tile, which bounds and item count are available
+ * through the LayoutResult. Empty items are not counted in the aggregate
+ * tile.
+ *
+ * Like the decorated algorithm, an AggregatingLayout holds no state and can be
+ * shared.
+ *
+ * @author ahamon
+ */
+public class AggregatingLayout implements LayoutAlgorithm {
+
+    private final LayoutAlgorithm delegate;
+    private final double minArea;
+
+    /**
+     * Creates an AggregatingLayout.
+     *
+     * @param algorithm the algorithm laying out the visible items and the
+     * aggregate tile
+     * @param minItemArea the pixel area below which items are aggregated
+     */
+    public AggregatingLayout(LayoutAlgorithm algorithm, double minItemArea) {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("algorithm should not be null");
+        }
+        if (!(minItemArea >= 0)) {
+            throw new IllegalArgumentException("minItemArea shall be positive, but was " + minItemArea);
+        }
+        delegate = algorithm;
+        minArea = minItemArea;
+    }
+
+    /**
+     * Get the algorithm laying out the visible items and the aggregate tile.
+     *
+     * @return the decorated algorithm
+     */
+    public LayoutAlgorithm getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Get the pixel area below which items are aggregated.
+     *
+     * @return the minimum item area
+     */
+    public double getMinArea() {
+        return minArea;
+    }
+
+    @Override
+    public void layout(LayoutResult result, double x, double y, double w, double h) {
+        aggregate(result, delegate, minArea, Integer.MAX_VALUE, x, y, w, h);
+    }
+
+    /**
+     * Lays out the items which size is above the given threshold, at most the
+     * given number of items as large as the threshold, and an aggregate tile
+     * standing for the other items, using the given algorithm. Empty items are
+     * neither laid out nor aggregated, they are given empty bounds at the
+     * bounds origin.
+     *
+     * @param result the result holding the sizes to lay out
+     * @param algorithm the algorithm laying out the visible items and the
+     * aggregate tile
+     * @param threshold the size below which items are aggregated, 0 to only
+     * leave the empty items out
+     * @param maxVisibleCount the maximum number of visible items, items as
+     * large as the threshold being aggregated in index order beyond it
+     * @param x coordinates of the bounds along the X axis
+     * @param y coordinates of the bounds along the Y axis
+     * @param w width of the bounds
+     * @param h height of the bounds
+     */
+    static void aggregate(LayoutResult result, LayoutAlgorithm algorithm, double threshold, int maxVisibleCount,
+            double x, double y, double w, double h) {
+        int count = result.size();
+        int aboveCount = 0;
+        int equalCount = 0;
+        int belowCount = 0;
+        double belowSize = 0;
+        for (int i = 0; i < count; i++) {
+            double size = result.getSize(i);
+            if (size > threshold) {
+                aboveCount++;
+            } else if (size == threshold && size > 0) {
+                equalCount++;
+            } else if (size > 0) {
+                belowCount++;
+                belowSize += size;
+            }
+        }
+        int equalVisibleCount = Math.max(0, Math.min(equalCount, maxVisibleCount - aboveCount));
+        int aggregatedCount = belowCount + equalCount - equalVisibleCount;
+        double aggregatedSize = belowSize + (equalCount - equalVisibleCount) * threshold;
+        int skippedCount = result.getSkippedCount();
+        // a single small item is not worth a tile of its own
+        boolean withTile = aggregatedCount > 1;
+        if (!withTile && skippedCount == 0) {
+            algorithm.layout(result, x, y, w, h);
+            return;
+        }
+        Visible visible = result.getVisible();
+        int[] indices = visible.indices(count);
+        int visibleCount = 0;
+        int equalLeft = withTile ? equalVisibleCount : equalCount;
+        for (int i = 0; i < count; i++) {
+            double size = result.getSize(i);
+            if (size > 0 && (!withTile || size > threshold)) {
+                indices[visibleCount++] = i;
+            } else if (size > 0 && size == threshold && equalLeft > 0) {
+                equalLeft--;
+                indices[visibleCount++] = i;
+            }
+        }
+        LayoutResult detail = visible.detail;
+        detail.loadVisible(result, indices, visibleCount, withTile, aggregatedSize);
+        if (detail.size() > 0) {
+            algorithm.layout(detail, x, y, w, h);
+        }
+        double aggregateX = withTile ? detail.getX(visibleCount) : x;
+        double aggregateY = withTile ? detail.getY(visibleCount) : y;
+        // the visible indices are sorted, walked along with the items
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            if (j < visibleCount && indices[j] == i) {
+                result.setBounds(i, detail.getX(j), detail.getY(j), detail.getWidth(j), detail.getHeight(j));
+                // aggregated by an aggregating algorithm laying out the visible items
+                result.setAggregated(i, !withTile && detail.isAggregated(j));
+                j++;
+            } else if (result.getSize(i) == 0) {
+                result.setBounds(i, x, y, 0, 0);
+                result.setAggregated(i, false);
+            } else {
+                result.setBounds(i, aggregateX, aggregateY, 0, 0);
+                result.setAggregated(i, true);
+            }
+        }
+        if (withTile) {
+            result.setAggregate(aggregatedCount, threshold, aggregateX, aggregateY, detail.getWidth(visibleCount), detail.getHeight(visibleCount));
+        } else {
+            result.setAggregate(detail.getAggregatedCount(), detail.getAggregateThreshold(),
+                    detail.getAggregateX(), detail.getAggregateY(), detail.getAggregateWidth(), detail.getAggregateHeight());
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof AggregatingLayout)) {
+            return false;
+        }
+        AggregatingLayout other = (AggregatingLayout) obj;
+        return delegate.equals(other.delegate) && Double.compare(minArea, other.minArea) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * delegate.hashCode() + Double.hashCode(minArea);
+    }
+
+    /**
+     * Visible items of the last aggregating layout of a LayoutResult: their
+     * indices, and the result in which they are laid out followed by the
+     * aggregate tile. Also holds the heap used by a TopKLayout to select them.
+     */
+    static final class Visible {
+
+        private final LayoutResult detail = new LayoutResult();
+        private int[] indices = new int[16];
+        private double[] heap = new double[16];
+
+        double[] heap(int count) {
+            if (heap.length < count) {
+                heap = new double[Math.max(count, heap.length + (heap.length >> 1))];
+            }
+            return heap;
+        }
+
+        private int[] indices(int count) {
+            if (indices.length < count) {
+                indices = new int[Math.max(count, indices.length + (indices.length >> 1))];
+            }
+            return indices;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
+
+/**
+ * Runs TreeMap layouts on a worker executor instead of the JavaFX application
+ * thread.
+ *
+ * The items sizes are snapshotted on the application thread into a back
+ * buffer, which the worker lays out. The finished buffer is then handed back
+ * to the application thread, where its bounds are applied to the items and it
+ * becomes the front buffer. Each submission starts a new generation: layouts
+ * of older generations still queued are cancelled and the ones already
+ * running are discarded when they complete.
+ *
+ * Submissions and handoffs are expected to happen on the same thread, the
+ * JavaFX application thread by default.
+ *
+ * @author ahamon
+ */
+public class BackgroundLayout {
+
+    private static final Logger LOG = Logger.getGlobal();
+
+    private final ExecutorService workerExecutor;
+    private final Executor handoffExecutor;
+    private final AtomicLong generation = new AtomicLong();
+    private final Deque<LayoutResult> freeBuffers = new ArrayDeque<>(2);
+
+    private LayoutResult frontBuffer = new LayoutResult();
+    private Future<?> pendingLayout = null;
+    // the back buffer of the pending layout, claimed either by its task when
+    // it starts or by its cancellation
+    private LayoutResult pendingBuffer = null;
+    private AtomicBoolean pendingClaimed = null;
+
+    /**
+     * Creates a BackgroundLayout running the layouts on the given executor and
+     * handing the results back to the given executor.
+     *
+     * @param worker the executor running the layouts
+     * @param handoff the executor applying the layouts to the items
+     */
+    public BackgroundLayout(ExecutorService worker, Executor handoff) {
+        if (worker == null) {
+            throw new IllegalArgumentException("worker should not be null");
+        }
+        if (handoff == null) {
+            throw new IllegalArgumentException("handoff should not be null");
+        }
+        workerExecutor = worker;
+        handoffExecutor = handoff;
+    }
+
+    /**
+     * Creates a BackgroundLayout running the layouts on the given executor and
+     * applying them on the JavaFX application thread.
+     *
+     * @param worker the executor running the layouts
+     */
+    public BackgroundLayout(ExecutorService worker) {
+        this(worker, Platform::runLater);
+    }
+
+    /**
+     * Lays out the items of the given model in the background, cancelling any
+     * previous layout still in progress.
+     *
+     * @param layout the layout to be used
+     * @param model the model which items are to be laid out
+     * @param bounds the bounds to lay the items in
+     * @param cache the cache of the previous layouts
+     * @param onApplied called once the bounds are applied to the items
+     */
+    public void submit(TreeMapLayout layout, MapModel model, Rect bounds, LayoutCache cache, Runnable onApplied) {
+        long layoutGeneration = generation.incrementAndGet();
+        cancelPendingLayout();
+        List<? extends MapItem> itemList = model.getItems();
+        MapItem[] items = itemList.toArray(new MapItem[itemList.size()]);
+        LayoutResult buffer = acquireBuffer();
+        if (items.length == 0) {
+            buffer.clear();
+            swap(buffer, onApplied);
+            return;
+        }
+        // snapshot of the sizes, on the thread owning the model
+        MapData modelData = model.getData();
+        // read before the sizes, so a change while loading them is a later miss
+        long modelVersion = modelData.getVersion();
+        MapData data = TreeMapLayout.loadSizes(modelData, items, bounds, buffer);
+        // snapshots do not change
+        long version = data == modelData ? modelVersion : data.getVersion();
+        if (cache.restore(data, version, bounds, layout.getAlgorithm(), buffer)) {
+            buffer.applyTo(items, 0);
+            swap(buffer, onApplied);
+            return;
+        }
+        AtomicBoolean claimed = new AtomicBoolean();
+        pendingBuffer = buffer;
+        pendingClaimed = claimed;
+        pendingLayout = workerExecutor.submit(() -> {
+            if (!claimed.compareAndSet(false, true)) {
+                // cancelled before it started, the buffer is already free
+                return;
+            }
+            if (generation.get() == layoutGeneration) {
+                layout.layoutSizes(buffer, bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+            }
+            handoffExecutor.execute(() -> handoff(layoutGeneration, items, data, version, bounds, layout, cache, buffer, onApplied));
+        });
+    }
+
+    /**
+     * Discards any layout still in progress.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        cancelPendingLayout();
+    }
+
+    /**
+     * Get the result of the last applied layout.
+     *
+     * @return the front buffer
+     */
+    public LayoutResult getFrontBuffer() {
+        return frontBuffer;
+    }
+
+    /**
+     * Get the number of submitted layouts.
+     *
+     * @return the current layout generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    private void handoff(long layoutGeneration, MapItem[] items, MapData data, long version, Rect bounds, TreeMapLayout layout, LayoutCache cache, LayoutResult buffer, Runnable onApplied) {
+        if (generation.get() != layoutGeneration) {
+            LOG.log(Level.FINE, "Discarding stale layout of generation {0}", layoutGeneration);
+            freeBuffers.push(buffer);
+            return;
+        }
+        pendingLayout = null;
+        pendingBuffer = null;
+        pendingClaimed = null;
+        buffer.applyTo(items, 0);
+        cache.store(data, version, bounds, layout.getAlgorithm(), buffer);
+        swap(buffer, onApplied);
+    }
+
+    private void cancelPendingLayout() {
+        if (pendingLayout == null) {
+            return;
+        }
+        pendingLayout.cancel(false);
+        // a layout which did not start never hands its buffer back
+        if (pendingClaimed.compareAndSet(false, true)) {
+            freeBuffers.push(pendingBuffer);
+        }
+        pendingLayout = null;
+        pendingBuffer = null;
+        pendingClaimed = null;
+    }
+
+    private LayoutResult acquireBuffer() {
+        // buffers keep their last sorted order, which is likely to be reused
+        return freeBuffers.isEmpty() ? new LayoutResult() : freeBuffers.pop();
+    }
+
+    private void swap(LayoutResult buffer, Runnable onApplied) {
+        freeBuffers.push(frontBuffer);
+        frontBuffer = buffer;
+        onApplied.run();
+    }
+}
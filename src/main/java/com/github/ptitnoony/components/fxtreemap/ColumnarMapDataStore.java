@@ -0,0 +1,250 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MapDataStore keeping each column in a primitive array: parent indexes,
+ * values, children offsets and dictionary encoded names, for 20 bytes per node
+ * plus the distinct names.
+ *
+ * @author ahamon
+ */
+public class ColumnarMapDataStore extends MapDataStore {
+
+    private final int[] parents;
+    // children of node i are the nodes [childOffsets[i], childOffsets[i + 1][
+    private final int[] childOffsets;
+    private final double[] values;
+    private final int[] nameIds;
+    private final List<String> dictionary;
+    private final Map<String, Integer> dictionaryIds;
+
+    private ColumnarMapDataStore(int[] parentColumn, int[] childOffsetColumn, double[] valueColumn, int[] nameIdColumn, List<String> names, Map<String, Integer> nameIdMap) {
+        parents = parentColumn;
+        childOffsets = childOffsetColumn;
+        values = valueColumn;
+        nameIds = nameIdColumn;
+        dictionary = names;
+        dictionaryIds = nameIdMap;
+        recalculate();
+    }
+
+    /**
+     * Copies the given hierarchy into a new store.
+     *
+     * @param root the root of the hierarchy to copy
+     * @return the store holding the copied hierarchy
+     */
+    public static ColumnarMapDataStore copyOf(MapData root) {
+        if (root == null) {
+            throw new IllegalArgumentException("root should not be null");
+        }
+        Builder builder = new Builder();
+        Deque<MapData> pending = new ArrayDeque<>();
+        builder.addNode(NO_PARENT, root.getName(), root.getValue());
+        pending.add(root);
+        // breadth first, the builder keeps the nodes in place
+        int parent = 0;
+        while (!pending.isEmpty()) {
+            for (MapData child : pending.poll().getChildrenData()) {
+                builder.addNode(parent, child.getName(), child.getValue());
+                pending.add(child);
+            }
+            parent++;
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int getNodeCount() {
+        return parents.length;
+    }
+
+    @Override
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    @Override
+    public int getFirstChild(int node) {
+        return childOffsets[node];
+    }
+
+    @Override
+    public int getChildCount(int node) {
+        return childOffsets[node + 1] - childOffsets[node];
+    }
+
+    @Override
+    public double getValue(int node) {
+        return values[node];
+    }
+
+    @Override
+    public String getName(int node) {
+        return dictionary.get(nameIds[node]);
+    }
+
+    /**
+     *
+     * @return the number of distinct names
+     */
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    @Override
+    protected void storeValue(int node, double value) {
+        values[node] = value;
+    }
+
+    @Override
+    protected void storeName(int node, String name) {
+        nameIds[node] = encode(name, dictionary, dictionaryIds);
+    }
+
+    @Override
+    protected void sumValues() {
+        int count = parents.length;
+        for (int node = 0; node < count; node++) {
+            if (childOffsets[node + 1] > childOffsets[node]) {
+                values[node] = 0;
+            }
+        }
+        for (int node = count - 1; node > 0; node--) {
+            values[parents[node]] += values[node];
+        }
+    }
+
+    private static int encode(String name, List<String> names, Map<String, Integer> nameIdMap) {
+        String key = name == null ? "" : name;
+        Integer id = nameIdMap.get(key);
+        if (id == null) {
+            id = names.size();
+            names.add(key);
+            nameIdMap.put(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * Builds a ColumnarMapDataStore node by node. Nodes can be added in any
+     * order, as long as parents are added before their children; they are
+     * placed in breadth first order when the store is built.
+     */
+    public static class Builder {
+
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> nameIdMap = new HashMap<>();
+        private int[] parents = new int[16];
+        private double[] values = new double[16];
+        private int[] nameIds = new int[16];
+        private int count = 0;
+
+        /**
+         * Adds a node. The first node added is the root.
+         *
+         * @param parent the index of the parent node, NO_PARENT for the root
+         * @param name the node name
+         * @param value the node value, ignored if children are added to the
+         * node
+         * @return the index of the node in the builder
+         */
+        public int addNode(int parent, String name, double value) {
+            if (count == 0 ? parent != NO_PARENT : parent < 0 || parent >= count) {
+                throw new IllegalArgumentException("parent shall be an already added node, but was " + parent);
+            }
+            if (value < 0.0) {
+                throw new IllegalArgumentException("value shall be positive, but was " + value);
+            }
+            if (count == parents.length) {
+                int capacity = count + (count >> 1);
+                parents = Arrays.copyOf(parents, capacity);
+                values = Arrays.copyOf(values, capacity);
+                nameIds = Arrays.copyOf(nameIds, capacity);
+            }
+            parents[count] = parent;
+            values[count] = value;
+            nameIds[count] = encode(name, names, nameIdMap);
+            return count++;
+        }
+
+        /**
+         * Builds the store.
+         *
+         * @return the built store
+         */
+        public ColumnarMapDataStore build() {
+            if (count == 0) {
+                throw new IllegalStateException("no node was added");
+            }
+            // children of each node, in insertion order
+            int[] childCounts = new int[count];
+            for (int node = 1; node < count; node++) {
+                childCounts[parents[node]]++;
+            }
+            int[] childStarts = new int[count + 1];
+            for (int node = 0; node < count; node++) {
+                childStarts[node + 1] = childStarts[node] + childCounts[node];
+            }
+            int[] children = new int[count];
+            int[] filled = Arrays.copyOf(childStarts, count);
+            for (int node = 1; node < count; node++) {
+                children[filled[parents[node]]++] = node;
+            }
+            // breadth first order
+            int[] order = new int[count];
+            int[] newIndexes = new int[count];
+            int tail = 1;
+            for (int head = 0; head < tail; head++) {
+                int node = order[head];
+                newIndexes[node] = head;
+                for (int c = childStarts[node]; c < childStarts[node + 1]; c++) {
+                    order[tail++] = children[c];
+                }
+            }
+            int[] storeParents = new int[count];
+            int[] storeChildOffsets = new int[count + 1];
+            double[] storeValues = new double[count];
+            int[] storeNameIds = new int[count];
+            storeChildOffsets[0] = 1;
+            for (int index = 0; index < count; index++) {
+                int node = order[index];
+                storeParents[index] = index == 0 ? NO_PARENT : newIndexes[parents[node]];
+                storeChildOffsets[index + 1] = storeChildOffsets[index] + childCounts[node];
+                storeValues[index] = values[node];
+                storeNameIds[index] = nameIds[node];
+            }
+            return new ColumnarMapDataStore(storeParents, storeChildOffsets, storeValues, storeNameIds, new ArrayList<>(names), new HashMap<>(nameIdMap));
+        }
+    }
+}
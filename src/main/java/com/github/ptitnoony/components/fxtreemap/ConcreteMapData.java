@@ -23,12 +23,11 @@
  */
 package com.github.ptitnoony.components.fxtreemap;
 
-import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -42,12 +41,29 @@ public class ConcreteMapData implements MapData {
     private static final Logger LOG = Logger.getGlobal();
     private static final String UNKNOWN_TYPE = "Unknown datatype:: ";
 
-    private final PropertyChangeSupport propertyChangeSupport;
+    // both allocated on the first registered listener
+    private PropertyChangeSupport propertyChangeSupport = null;
+    private ValueListener[] valueListeners = null;
     private final List<MapData> datas;
     private String name;
     private double value;
     private double lastNotifiedValue;
+    private long version = 0;
+    private long structureVersion = 0;
     private final DataType dataType;
+    private final ValueListener childListener = this::handleChildValueChanged;
+    private ConcreteMapData parent = null;
+    // batch opened on this data
+    private int batchLevel = 0;
+    private boolean committing = false;
+    private List<ConcreteMapData> batchChanges = null;
+    // state of this data within the batch of an ancestor
+    private boolean batchChanged = false;
+    private double batchOldValue;
+    private int batchDepth;
+    // children changes applied as deltas since the last exact sum
+    private int deltaUpdates = 0;
+    private boolean scalingChildren = false;
 
     /**
      * Create a new ConcreteMapData with the given name and value.
@@ -62,9 +78,9 @@ public class ConcreteMapData implements MapData {
         if (dataName == null) {
             throw new IllegalArgumentException("name should not be null");
         }
-        propertyChangeSupport = new PropertyChangeSupport(ConcreteMapData.this);
         name = dataName;
         value = dataValue;
+        lastNotifiedValue = value;
         datas = Collections.EMPTY_LIST;
         dataType = DataType.LEAF;
     }
@@ -93,10 +109,9 @@ public class ConcreteMapData implements MapData {
      * @param dataElements list containing data to be aggregated as children
      */
     public ConcreteMapData(String dataCollectionName, List<MapData> dataElements) {
-        propertyChangeSupport = new PropertyChangeSupport(ConcreteMapData.this);
         name = dataCollectionName;
-        datas = new LinkedList<>(dataElements);
-        datas.forEach(data -> data.addPropertyChangeListener(this::handleChildValueChanged));
+        datas = new ArrayList<>(dataElements);
+        datas.forEach(this::attachChild);
         recalculate();
         lastNotifiedValue = value;
         dataType = DataType.NODE;
@@ -119,14 +134,13 @@ public class ConcreteMapData implements MapData {
      * @param type the DataType
      */
     public ConcreteMapData(String dataCollectionName, DataType type) {
-        propertyChangeSupport = new PropertyChangeSupport(ConcreteMapData.this);
         dataType = type;
         name = dataCollectionName;
         switch (dataType) {
             case LEAF ->
                 datas = Collections.EMPTY_LIST;
             case NODE ->
-                datas = new LinkedList<>();
+                datas = new ArrayList<>();
             default ->
                 throw new IllegalArgumentException(UNKNOWN_TYPE + type);
         }
@@ -139,14 +153,29 @@ public class ConcreteMapData implements MapData {
         return dataType;
     }
 
+    @Override
+    public void addValueListener(ValueListener listener) {
+        valueListeners = ValueListeners.add(valueListeners, listener);
+    }
+
+    @Override
+    public void removeValueListener(ValueListener listener) {
+        valueListeners = ValueListeners.remove(valueListeners, listener);
+    }
+
     @Override
     public void addPropertyChangeListener(PropertyChangeListener listener) {
+        if (propertyChangeSupport == null) {
+            propertyChangeSupport = new PropertyChangeSupport(ConcreteMapData.this);
+        }
         propertyChangeSupport.addPropertyChangeListener(listener);
     }
 
     @Override
     public void removePropertyChangeListener(PropertyChangeListener listener) {
-        propertyChangeSupport.removePropertyChangeListener(listener);
+        if (propertyChangeSupport != null) {
+            propertyChangeSupport.removePropertyChangeListener(listener);
+        }
     }
 
     @Override
@@ -154,12 +183,31 @@ public class ConcreteMapData implements MapData {
         return value;
     }
 
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public long getStructureVersion() {
+        return structureVersion;
+    }
+
     @Override
     public void setValue(double newValue) {
         if (newValue < 0.0) {
             LOG.log(Level.WARNING, "Ignoring set of a negative value ({0} for {1}", new Object[]{newValue, name});
             return;
         }
+        if (!datas.isEmpty() && value < TreeMapUtils.EPSILON && newValue >= TreeMapUtils.EPSILON) {
+            LOG.log(Level.WARNING, "Ignoring set of the value of {0}: its children have no value to scale", name);
+            return;
+        }
+        ConcreteMapData batchOwner = getBatchOwner();
+        if (batchOwner != null) {
+            markChanged(batchOwner);
+        }
+        double oldValue = value;
         switch (dataType) {
             case LEAF ->
                 value = newValue;
@@ -170,13 +218,23 @@ public class ConcreteMapData implements MapData {
                 } else {
                     percentage = newValue / value;
                 }
+                // the children changes are already accounted for
+                scalingChildren = true;
+                try {
+                    datas.forEach(data -> data.setValue(data.getValue() * percentage));
+                } finally {
+                    scalingChildren = false;
+                }
                 value = newValue;
-                datas.forEach(data -> data.setValue(data.getValue() * percentage));
             }
             default ->
                 throw new IllegalArgumentException(UNKNOWN_TYPE + dataType);
         }
-        propertyChangeSupport.firePropertyChange(TreeMapUtils.MAP_DATA_VALUE_CHANGED, null, value);
+        version++;
+        if (batchOwner == null) {
+            lastNotifiedValue = value;
+            fireValueChanged(oldValue);
+        }
     }
 
     @Override
@@ -197,10 +255,10 @@ public class ConcreteMapData implements MapData {
     @Override
     public void addChildrenData(MapData data) {
         if (dataType == DataType.NODE && data != null) {
-            data.addPropertyChangeListener(this::handleChildValueChanged);
+            attachChild(data);
             datas.add(data);
-            recalculate();
-            notifyValueChanged();
+            structureChanged();
+            childValueChanged();
         }
     }
 
@@ -208,30 +266,211 @@ public class ConcreteMapData implements MapData {
     public void removeChildrenData(MapData data) {
         if (datas.contains(data)) {
             datas.remove(data);
+            data.removeValueListener(childListener);
+            if (data instanceof ConcreteMapData) {
+                ((ConcreteMapData) data).parent = null;
+            }
+            structureChanged();
             recalculate();
         }
     }
 
+    /**
+     * Recalculates exactly the value of this data and of its descendants from
+     * the leaves values. Changes of the children values are otherwise applied
+     * as deltas, and exactly recalculated every
+     * TreeMapUtils.DELTA_UPDATES_BEFORE_RECALCULATE changes only.
+     */
+    public void recalculateValue() {
+        datas.forEach(data -> {
+            if (data instanceof ConcreteMapData) {
+                ((ConcreteMapData) data).recalculateValue();
+            }
+        });
+        if (!datas.isEmpty()) {
+            recalculate();
+            notifyValueChanged();
+        }
+    }
+
+    /**
+     * Opens a batch of changes on this data and its descendants. Until the
+     * matching commit, changed values are not propagated nor notified.
+     * Batches can be nested.
+     */
+    public void beginBatch() {
+        if (batchLevel == 0 && batchChanges == null) {
+            batchChanges = new ArrayList<>();
+        }
+        batchLevel++;
+    }
+
+    /**
+     * Closes a batch of changes. When the outermost batch is committed, each
+     * changed data and each of their ancestors is recalculated once, deepest
+     * first, and notifies a single change event if its value changed.
+     */
+    public void commit() {
+        if (batchLevel == 0) {
+            throw new IllegalStateException("No batch to commit on " + name);
+        }
+        batchLevel--;
+        if (batchLevel > 0) {
+            return;
+        }
+        List<ConcreteMapData> changes = new ArrayList<>(batchChanges.size());
+        for (ConcreteMapData changed : batchChanges) {
+            int depth = 0;
+            ConcreteMapData p = changed;
+            while (p != null && p != this) {
+                depth++;
+                p = p.parent;
+            }
+            if (p == null) {
+                // removed during the batch, no longer to be committed here
+                changed.batchChanged = false;
+            } else {
+                changed.batchDepth = depth;
+                changes.add(changed);
+            }
+        }
+        batchChanges = null;
+        changes.sort((a, b) -> Integer.compare(b.batchDepth, a.batchDepth));
+        // events fired by the changed data are handled by this commit
+        committing = true;
+        try {
+            changes.forEach(ConcreteMapData::commitChange);
+        } finally {
+            committing = false;
+        }
+    }
+
+    /**
+     * Applies the given changes in a single batch.
+     *
+     * @param changes the changes to this data or its descendants
+     */
+    public void runBatch(Runnable changes) {
+        beginBatch();
+        try {
+            changes.run();
+        } finally {
+            commit();
+        }
+    }
+
     @Override
     public List<MapData> getChildrenData() {
         return Collections.unmodifiableList(datas);
     }
 
     private void recalculate() {
-        value = datas.stream().mapToDouble(MapData::getValue).sum();
+        double sum = 0;
+        for (int i = 0; i < datas.size(); i++) {
+            sum += datas.get(i).getValue();
+        }
+        value = sum;
+        deltaUpdates = 0;
+        version++;
     }
 
-    private void handleChildValueChanged(PropertyChangeEvent event) {
-        LOG.log(Level.FINE, "updating value after a change in child {0}", event.getSource());
-        recalculate();
-        notifyValueChanged();
+    private void handleChildValueChanged(MapData child, double oldValue, double newValue) {
+        if (scalingChildren) {
+            return;
+        }
+        ConcreteMapData batchOwner = getBatchOwner();
+        if (batchOwner != null) {
+            markChanged(batchOwner);
+        } else if (Double.isFinite(newValue - oldValue) && ++deltaUpdates < TreeMapUtils.DELTA_UPDATES_BEFORE_RECALCULATE) {
+            // O(1) update, the exact sum is periodically recalculated to bound
+            // the floating point drift
+            value += newValue - oldValue;
+            version++;
+            notifyValueChanged();
+        } else {
+            // also when the child did not notify its previous value
+            recalculate();
+            notifyValueChanged();
+        }
+    }
+
+    private void childValueChanged() {
+        ConcreteMapData batchOwner = getBatchOwner();
+        if (batchOwner != null) {
+            markChanged(batchOwner);
+        } else {
+            recalculate();
+            notifyValueChanged();
+        }
+    }
+
+    private void structureChanged() {
+        for (ConcreteMapData data = this; data != null; data = data.parent) {
+            data.structureVersion++;
+        }
+    }
+
+    private void attachChild(MapData data) {
+        data.addValueListener(childListener);
+        if (data instanceof ConcreteMapData) {
+            ((ConcreteMapData) data).parent = this;
+        }
+    }
+
+    private ConcreteMapData getBatchOwner() {
+        for (ConcreteMapData data = this; data != null; data = data.parent) {
+            if (data.batchLevel > 0) {
+                return data;
+            }
+            if (data.committing) {
+                // changes made by listeners to already committed data are
+                // applied immediately
+                return batchChanged ? data : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records the change of this data, and of its ancestors up to the batch
+     * owner, to be recalculated and notified on commit.
+     */
+    private void markChanged(ConcreteMapData batchOwner) {
+        for (ConcreteMapData data = this; data != null && !data.batchChanged; data = data.parent) {
+            data.batchChanged = true;
+            data.batchOldValue = data.value;
+            batchOwner.batchChanges.add(data);
+            if (data == batchOwner) {
+                break;
+            }
+        }
+    }
+
+    private void commitChange() {
+        batchChanged = false;
+        if (dataType == DataType.NODE && !datas.isEmpty()) {
+            recalculate();
+        }
+        if (Math.abs(value - batchOldValue) > TreeMapUtils.EPSILON) {
+            double oldValue = lastNotifiedValue;
+            lastNotifiedValue = value;
+            fireValueChanged(oldValue);
+        }
     }
 
     private void notifyValueChanged() {
         // to prevent overflowing upper levels with unnecessary notifications
         if (Math.abs(value - lastNotifiedValue) > TreeMapUtils.EPSILON) {
-            propertyChangeSupport.firePropertyChange(TreeMapUtils.MAP_DATA_VALUE_CHANGED, null, value);
+            double oldValue = lastNotifiedValue;
             lastNotifiedValue = value;
+            fireValueChanged(oldValue);
+        }
+    }
+
+    private void fireValueChanged(double oldValue) {
+        ValueListeners.fire(valueListeners, this, oldValue, value);
+        if (propertyChangeSupport != null) {
+            propertyChangeSupport.firePropertyChange(TreeMapUtils.MAP_DATA_VALUE_CHANGED, oldValue, value);
         }
     }
 
@@ -0,0 +1,370 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Thread-safe MapData, which values can be updated by several producer
+ * threads.
+ * <p>
+ * Leaf values are updated lock-free with a compare-and-set of their bits.
+ * Node values are aggregated lazily: a leaf change only marks its ancestors
+ * as stale, and the node sums its children when read next. Producers thus
+ * never block, neither on each other nor on the reading thread, and readers
+ * always see a node value that is the sum of the values its children had
+ * while it was read.
+ * <p>
+ * Listeners are notified on the thread that made the change. A node notifies
+ * every change of its descendants, whether or not its value was read since
+ * the previous one. Its notified values are accumulated atomically from the
+ * changes of its descendants, so that each notification starts from the new
+ * value of the previous one; they may differ from the sum of the children
+ * values by a rounding error.
+ *
+ * @author ahamon
+ */
+public class ConcurrentMapData implements MapData {
+
+    private static final Logger LOG = Logger.getGlobal();
+    private static final String UNKNOWN_TYPE = "Unknown datatype:: ";
+
+    private final DataType dataType;
+    private final List<MapData> datas;
+    private final AtomicLong valueBits;
+    // nodes only, the last notified value
+    private final AtomicLong notifiedBits;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong structureVersion = new AtomicLong();
+    private final ValueListener childListener = this::handleChildValueChanged;
+    private volatile String name;
+    private volatile ConcurrentMapData parent = null;
+    // nodes only, the cached sum of the children values
+    private volatile boolean stale = false;
+    private volatile double cachedValue = 0;
+    // both allocated on the first registered listener
+    private volatile ValueListener[] valueListeners = null;
+    private volatile PropertyChangeSupport propertyChangeSupport = null;
+
+    /**
+     * Create a new leaf ConcurrentMapData with the given name and value.
+     *
+     * @param dataName the data name
+     * @param dataValue the data value
+     */
+    public ConcurrentMapData(String dataName, double dataValue) {
+        if (dataValue < 0.0) {
+            throw new IllegalArgumentException("value shall be positive, but was " + dataValue);
+        }
+        if (dataName == null) {
+            throw new IllegalArgumentException("name should not be null");
+        }
+        dataType = DataType.LEAF;
+        name = dataName;
+        datas = Collections.emptyList();
+        valueBits = new AtomicLong(Double.doubleToRawLongBits(dataValue));
+        notifiedBits = null;
+    }
+
+    /**
+     * Creates a new node ConcurrentMapData from the given list of MapData.
+     *
+     * @param dataCollectionName the data name
+     * @param dataElements list containing data to be aggregated as children
+     */
+    public ConcurrentMapData(String dataCollectionName, List<MapData> dataElements) {
+        this(dataCollectionName, DataType.NODE);
+        dataElements.forEach(this::addChildrenData);
+    }
+
+    /**
+     * Creates a new node ConcurrentMapData from the given data elements.
+     *
+     * @param dataCollectionName the data name
+     * @param dataElements the data elements to be added as children
+     */
+    public ConcurrentMapData(String dataCollectionName, MapData... dataElements) {
+        this(dataCollectionName, Arrays.asList(dataElements));
+    }
+
+    /**
+     * Creates a new ConcurrentMapData with TreeMapUtils.DEFAULT_DATA_VALUE.
+     *
+     * @param dataCollectionName the data name
+     * @param type the DataType
+     */
+    public ConcurrentMapData(String dataCollectionName, DataType type) {
+        dataType = type;
+        name = dataCollectionName;
+        switch (dataType) {
+            case LEAF -> {
+                datas = Collections.emptyList();
+                valueBits = new AtomicLong(Double.doubleToRawLongBits(TreeMapUtils.DEFAULT_DATA_VALUE));
+                notifiedBits = null;
+            }
+            case NODE -> {
+                datas = new CopyOnWriteArrayList<>();
+                valueBits = null;
+                notifiedBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+            }
+            default ->
+                throw new IllegalArgumentException(UNKNOWN_TYPE + type);
+        }
+    }
+
+    @Override
+    public DataType getType() {
+        return dataType;
+    }
+
+    @Override
+    public double getValue() {
+        if (valueBits != null) {
+            return Double.longBitsToDouble(valueBits.get());
+        }
+        if (stale) {
+            synchronized (this) {
+                if (stale) {
+                    // cleared first, so that a change made during the sum
+                    // marks the node stale again
+                    stale = false;
+                    double sum = 0;
+                    for (MapData data : datas) {
+                        sum += data.getValue();
+                    }
+                    cachedValue = sum;
+                }
+            }
+        }
+        return cachedValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The children of a node are scaled one after the other, concurrent
+     * changes of the children are not excluded.
+     */
+    @Override
+    public void setValue(double newValue) {
+        if (newValue < 0.0) {
+            LOG.log(Level.WARNING, "Ignoring set of a negative value ({0} for {1}", new Object[]{newValue, name});
+            return;
+        }
+        if (valueBits != null) {
+            double oldValue = Double.longBitsToDouble(valueBits.getAndSet(Double.doubleToRawLongBits(newValue)));
+            leafValueChanged(oldValue, newValue);
+            return;
+        }
+        double oldValue = getValue();
+        if (oldValue < TreeMapUtils.EPSILON && newValue >= TreeMapUtils.EPSILON) {
+            LOG.log(Level.WARNING, "Ignoring set of the value of {0}: its children have no value to scale", name);
+            return;
+        }
+        double percentage = newValue < TreeMapUtils.EPSILON ? 0.0 : newValue / oldValue;
+        datas.forEach(data -> data.setValue(data.getValue() * percentage));
+    }
+
+    /**
+     * Atomically adds the given amount to the value of a leaf.
+     *
+     * @param delta the amount to add, the value staying equal or greater to 0
+     * @return the new value
+     */
+    public double addValue(double delta) {
+        if (valueBits == null) {
+            throw new IllegalStateException("Cannot add a value to the node " + name);
+        }
+        long oldBits;
+        double oldValue;
+        double newValue;
+        do {
+            oldBits = valueBits.get();
+            oldValue = Double.longBitsToDouble(oldBits);
+            newValue = oldValue + delta;
+            if (newValue < 0.0) {
+                LOG.log(Level.WARNING, "Ignoring addition leading to a negative value ({0} for {1}", new Object[]{newValue, name});
+                return oldValue;
+            }
+        } while (!valueBits.compareAndSet(oldBits, Double.doubleToRawLongBits(newValue)));
+        leafValueChanged(oldValue, newValue);
+        return newValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The version changes after the value, a value read after the version
+     * holds at least the changes it counts.
+     */
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public long getStructureVersion() {
+        return structureVersion.get();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(String newName) {
+        name = newName;
+    }
+
+    @Override
+    public boolean hasChildrenData() {
+        return !datas.isEmpty();
+    }
+
+    @Override
+    public List<MapData> getChildrenData() {
+        return Collections.unmodifiableList(datas);
+    }
+
+    @Override
+    public void addChildrenData(MapData data) {
+        if (dataType == DataType.NODE && data != null) {
+            if (data instanceof ConcurrentMapData) {
+                ((ConcurrentMapData) data).parent = this;
+            } else {
+                data.addValueListener(childListener);
+            }
+            datas.add(data);
+            structureChanged();
+            markStale(data.getValue());
+        }
+    }
+
+    @Override
+    public void removeChildrenData(MapData data) {
+        if (datas.remove(data)) {
+            if (data instanceof ConcurrentMapData) {
+                ((ConcurrentMapData) data).parent = null;
+            } else {
+                data.removeValueListener(childListener);
+            }
+            structureChanged();
+            markStale(-data.getValue());
+        }
+    }
+
+    @Override
+    public synchronized void addValueListener(ValueListener listener) {
+        valueListeners = ValueListeners.add(valueListeners, listener);
+    }
+
+    @Override
+    public synchronized void removeValueListener(ValueListener listener) {
+        valueListeners = ValueListeners.remove(valueListeners, listener);
+    }
+
+    @Override
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        synchronized (this) {
+            if (propertyChangeSupport == null) {
+                propertyChangeSupport = new PropertyChangeSupport(ConcurrentMapData.this);
+            }
+        }
+        propertyChangeSupport.addPropertyChangeListener(listener);
+    }
+
+    @Override
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        PropertyChangeSupport support = propertyChangeSupport;
+        if (support != null) {
+            support.removePropertyChangeListener(listener);
+        }
+    }
+
+    private void leafValueChanged(double oldValue, double newValue) {
+        if (Double.compare(oldValue, newValue) == 0) {
+            return;
+        }
+        version.incrementAndGet();
+        fireValueChanged(oldValue, newValue);
+        ConcurrentMapData p = parent;
+        if (p != null) {
+            p.markStale(newValue - oldValue);
+        }
+    }
+
+    private void handleChildValueChanged(MapData child, double oldValue, double newValue) {
+        markStale(newValue - oldValue);
+    }
+
+    private void structureChanged() {
+        for (ConcurrentMapData data = this; data != null; data = data.parent) {
+            data.structureVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Marks this node and its ancestors as stale after a change of a
+     * descendant by the given amount.
+     */
+    private void markStale(double delta) {
+        for (ConcurrentMapData data = this; data != null; data = data.parent) {
+            // marked before the version changes, so that a value read after
+            // the new version is summed again
+            data.stale = true;
+            data.version.incrementAndGet();
+            data.notifyValueChanged(delta);
+        }
+    }
+
+    private void notifyValueChanged(double delta) {
+        long oldBits;
+        double oldValue;
+        double newValue;
+        do {
+            oldBits = notifiedBits.get();
+            oldValue = Double.longBitsToDouble(oldBits);
+            newValue = oldValue + delta;
+        } while (!notifiedBits.compareAndSet(oldBits, Double.doubleToRawLongBits(newValue)));
+        fireValueChanged(oldValue, newValue);
+    }
+
+    private void fireValueChanged(double oldValue, double newValue) {
+        ValueListeners.fire(valueListeners, this, oldValue, newValue);
+        PropertyChangeSupport support = propertyChangeSupport;
+        if (support != null && support.hasListeners(TreeMapUtils.MAP_DATA_VALUE_CHANGED)) {
+            support.firePropertyChange(TreeMapUtils.MAP_DATA_VALUE_CHANGED, oldValue, newValue);
+        }
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.Arrays;
+
+/**
+ * Squarified layout which keeps the rows of its previous layout of a result
+ * as long as they stay square enough.
+ *
+ * When the sort order of the items did not change, the rows up to the first
+ * one holding an item which size changed are kept as they are. The following
+ * rows keep their items and are only resized and moved, without searching
+ * for the best rows again. Once the worst aspect ratio of a kept row exceeds
+ * the one it was squarified with by more than the tolerance, the remaining
+ * items are squarified again.
+ *
+ * Changes are detected on the sizes, which TreeMapLayout scales so that they
+ * fill the bounds. When the total value changes, every size changes: all the
+ * rows are then resized and moved, still keeping their items while they stay
+ * square enough. Rows are only kept as they are when values move between
+ * items without changing the total.
+ *
+ * The rows are stored in the LayoutResult: like SquarifiedLayout, an
+ * IncrementalSquarifiedLayout holds no state and can be shared.
+ *
+ * @author ahamon
+ */
+public class IncrementalSquarifiedLayout implements LayoutAlgorithm {
+
+    private final double aspectTolerance;
+
+    /**
+     * Creates an IncrementalSquarifiedLayout with the given tolerance.
+     *
+     * @param tolerance the relative increase of the worst aspect ratio of a
+     * row above which the rows are squarified again
+     */
+    public IncrementalSquarifiedLayout(double tolerance) {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("tolerance shall be positive, but was " + tolerance);
+        }
+        aspectTolerance = tolerance;
+    }
+
+    /**
+     * Creates an IncrementalSquarifiedLayout with
+     * TreeMapUtils.DEFAULT_ASPECT_TOLERANCE.
+     */
+    public IncrementalSquarifiedLayout() {
+        this(TreeMapUtils.DEFAULT_ASPECT_TOLERANCE);
+    }
+
+    /**
+     * Get the relative increase of the worst aspect ratio of a row above
+     * which the rows are squarified again.
+     *
+     * @return the aspect ratio tolerance
+     */
+    public double getAspectTolerance() {
+        return aspectTolerance;
+    }
+
+    @Override
+    public void layout(LayoutResult result, double x, double y, double w, double h) {
+        result.sortDescending();
+        Rows rows = result.getRows();
+        if (rows.isValidFor(result, x, y, w, h)) {
+            int rank = rows.firstChangedRank(result);
+            if (rank < result.size()) {
+                relayout(result, rows, rows.rowOf(rank));
+            }
+        } else {
+            rows.clear(x, y, w, h);
+            SquarifiedLayout.layoutRanks(result, 0, result.size() - 1, x, y, w, h, rows);
+        }
+        rows.commit(result);
+    }
+
+    /**
+     * Lays out again the given row and the following ones, keeping their
+     * items as long as they stay square enough.
+     */
+    private void relayout(LayoutResult result, Rows rows, int firstRow) {
+        int last = result.size() - 1;
+        int start = firstRow == 0 ? 0 : rows.ends[firstRow - 1] + 1;
+        double x = rows.bounds[4 * firstRow];
+        double y = rows.bounds[4 * firstRow + 1];
+        double w = rows.bounds[4 * firstRow + 2];
+        double h = rows.bounds[4 * firstRow + 3];
+        for (int row = firstRow; row < rows.count; row++) {
+            int end = rows.ends[row];
+            boolean lastItem = start == end && end == last;
+            double aspect;
+            if (lastItem) {
+                aspect = Math.max(w / h, h / w);
+            } else {
+                double side = Math.min(w, h);
+                double rowSum = 0;
+                for (int rank = start; rank <= end; rank++) {
+                    rowSum += result.getSize(result.getOrder(rank));
+                }
+                // sorted ranks: the largest item first, the smallest last
+                aspect = SquarifiedLayout.worstAspect(rowSum, result.getSize(result.getOrder(end)),
+                        result.getSize(result.getOrder(start)), side * side);
+            }
+            if (aspect > rows.aspects[row] * (1 + aspectTolerance)) {
+                rows.count = row;
+                SquarifiedLayout.layoutRanks(result, start, last, x, y, w, h, rows);
+                return;
+            }
+            rows.setBounds(row, x, y, w, h);
+            if (lastItem) {
+                result.setBounds(result.getOrder(start), x, y, w, h);
+                return;
+            }
+            double rowRatio = SquarifiedLayout.layoutRow(result, start, end, x, y, w, h);
+            if (w > h) {
+                double rowWidth = w * rowRatio;
+                x += rowWidth;
+                w -= rowWidth;
+            } else {
+                double rowHeight = h * rowRatio;
+                y += rowHeight;
+                h -= rowHeight;
+            }
+            start = end + 1;
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof IncrementalSquarifiedLayout)) {
+            return false;
+        }
+        return Double.compare(aspectTolerance, ((IncrementalSquarifiedLayout) obj).aspectTolerance) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(aspectTolerance);
+    }
+
+    /**
+     * Rows committed by the last layout of a LayoutResult: the last rank of
+     * each row, the bounds remaining when it was laid out and the worst
+     * aspect ratio it was squarified with, along with the sizes of the items.
+     */
+    static final class Rows {
+
+        private int count = 0;
+        private int[] ends = new int[16];
+        private double[] bounds = new double[64];
+        private double[] aspects = new double[16];
+        private double[] sizes = new double[16];
+        private int itemCount = -1;
+        private long modCount = -1;
+        private double x;
+        private double y;
+        private double w;
+        private double h;
+
+        void clear(double boundsX, double boundsY, double boundsW, double boundsH) {
+            count = 0;
+            x = boundsX;
+            y = boundsY;
+            w = boundsW;
+            h = boundsH;
+        }
+
+        void add(int end, double rowX, double rowY, double rowW, double rowH, double aspect) {
+            if (count == ends.length) {
+                ends = Arrays.copyOf(ends, 2 * count);
+                bounds = Arrays.copyOf(bounds, 8 * count);
+                aspects = Arrays.copyOf(aspects, 2 * count);
+            }
+            ends[count] = end;
+            aspects[count] = aspect;
+            count++;
+            setBounds(count - 1, rowX, rowY, rowW, rowH);
+        }
+
+        int size() {
+            return count;
+        }
+
+        private void setBounds(int row, double rowX, double rowY, double rowW, double rowH) {
+            bounds[4 * row] = rowX;
+            bounds[4 * row + 1] = rowY;
+            bounds[4 * row + 2] = rowW;
+            bounds[4 * row + 3] = rowH;
+        }
+
+        /**
+         * Tells whether the rows describe the current order and bounds of the
+         * result, laid out in the given bounds.
+         */
+        private boolean isValidFor(LayoutResult result, double boundsX, double boundsY, double boundsW, double boundsH) {
+            return modCount == result.getModCount() && itemCount == result.size()
+                    && x == boundsX && y == boundsY && w == boundsW && h == boundsH;
+        }
+
+        private int firstChangedRank(LayoutResult result) {
+            for (int rank = 0; rank < itemCount; rank++) {
+                int index = result.getOrder(rank);
+                if (sizes[index] != result.getSize(index)) {
+                    return rank;
+                }
+            }
+            return itemCount;
+        }
+
+        private int rowOf(int rank) {
+            int row = Arrays.binarySearch(ends, 0, count, rank);
+            return row >= 0 ? row : -row - 1;
+        }
+
+        private void commit(LayoutResult result) {
+            itemCount = result.size();
+            if (sizes.length < itemCount) {
+                sizes = new double[Math.max(itemCount, 2 * sizes.length)];
+            }
+            for (int i = 0; i < itemCount; i++) {
+                sizes[i] = result.getSize(i);
+            }
+            modCount = result.getModCount();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+/**
+ * Strategy computing the bounds of the items of a single level. Algorithms
+ * trade the squareness of the items against speed and the stability of the
+ * items order.
+ *
+ * Implementations shall not hold any state, so that a single instance can be
+ * used concurrently by several views and threads.
+ *
+ * @author ahamon
+ */
+public interface LayoutAlgorithm {
+
+    /**
+     * Lays out the items which sizes are loaded in the given result, setting
+     * the bounds of each of them in the result. The sizes are pixel areas
+     * adding up to the area of the given bounds.
+     *
+     * @param result the result holding the sizes, to be filled with bounds
+     * @param x coordinates of the bounds along the X axis
+     * @param y coordinates of the bounds along the Y axis
+     * @param w width of the bounds
+     * @param h height of the bounds
+     */
+    void layout(LayoutResult result, double x, double y, double w, double h);
+}
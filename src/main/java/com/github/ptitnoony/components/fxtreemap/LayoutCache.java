@@ -0,0 +1,245 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least recently used cache of layouts. A layout is identified by the
+ * laid out MapData, its version, the width and height of the bounds and the
+ * layout algorithm, so that returning to a level or to a previous size does
+ * not run the layout again.
+ *
+ * Data which version is MapData.NO_VERSION is never cached. The cache is
+ * thread safe.
+ *
+ * @author ahamon
+ */
+public class LayoutCache {
+
+    // aggregated item count, threshold and bounds of the aggregate tile,
+    // followed in the cached layouts by the indices of the aggregated items
+    private static final int AGGREGATE_LENGTH = 6;
+
+    private final int capacity;
+    private final Map<Key, double[]> entries;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Creates a LayoutCache holding at most the given number of layouts.
+     *
+     * @param maxEntries the maximum number of cached layouts
+     */
+    public LayoutCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries shall be at least 1, but was " + maxEntries);
+        }
+        capacity = maxEntries;
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+                if (size() > capacity) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Creates a LayoutCache holding at most
+     * TreeMapUtils.DEFAULT_LAYOUT_CACHE_CAPACITY layouts.
+     */
+    public LayoutCache() {
+        this(TreeMapUtils.DEFAULT_LAYOUT_CACHE_CAPACITY);
+    }
+
+    /**
+     * Copies the cached bounds of the given data layout into the result.
+     *
+     * @param data the laid out data
+     * @param version the data version read before its sizes were loaded
+     * @param bounds the bounds the data is laid out in
+     * @param algorithm the layout algorithm
+     * @param result the result which first entries are to be filled
+     * @return if the layout was cached
+     */
+    synchronized boolean restore(MapData data, long version, Rect bounds, LayoutAlgorithm algorithm, LayoutResult result) {
+        if (version == MapData.NO_VERSION) {
+            return false;
+        }
+        double[] cached = entries.get(new Key(data, version, bounds, algorithm));
+        int a = 4 * result.size();
+        if (cached == null || cached.length < a + AGGREGATE_LENGTH || cached.length != a + AGGREGATE_LENGTH + (int) cached[a]) {
+            missCount++;
+            return false;
+        }
+        hitCount++;
+        for (int i = 0; i < result.size(); i++) {
+            result.setBounds(i, bounds.getX() + cached[4 * i], bounds.getY() + cached[4 * i + 1], cached[4 * i + 2], cached[4 * i + 3]);
+        }
+        int aggregatedCount = (int) cached[a];
+        if (aggregatedCount > 0) {
+            for (int i = 0; i < result.size(); i++) {
+                result.setAggregated(i, false);
+            }
+            for (int k = 0; k < aggregatedCount; k++) {
+                result.setAggregated((int) cached[a + AGGREGATE_LENGTH + k], true);
+            }
+        }
+        result.setAggregate(aggregatedCount, cached[a + 1], bounds.getX() + cached[a + 2], bounds.getY() + cached[a + 3], cached[a + 4], cached[a + 5]);
+        return true;
+    }
+
+    /**
+     * Caches the bounds of the given data layout, relative to the bounds
+     * origin.
+     *
+     * @param data the laid out data
+     * @param version the data version read before its sizes were loaded
+     * @param bounds the bounds the data was laid out in
+     * @param algorithm the layout algorithm
+     * @param result the result holding the computed bounds
+     */
+    synchronized void store(MapData data, long version, Rect bounds, LayoutAlgorithm algorithm, LayoutResult result) {
+        if (version == MapData.NO_VERSION) {
+            return;
+        }
+        double[] cached = new double[4 * result.size() + AGGREGATE_LENGTH + result.getAggregatedCount()];
+        for (int i = 0; i < result.size(); i++) {
+            cached[4 * i] = result.getX(i) - bounds.getX();
+            cached[4 * i + 1] = result.getY(i) - bounds.getY();
+            cached[4 * i + 2] = result.getWidth(i);
+            cached[4 * i + 3] = result.getHeight(i);
+        }
+        int a = 4 * result.size();
+        cached[a] = result.getAggregatedCount();
+        cached[a + 1] = result.getAggregateThreshold();
+        cached[a + 2] = result.getAggregateX() - bounds.getX();
+        cached[a + 3] = result.getAggregateY() - bounds.getY();
+        cached[a + 4] = result.getAggregateWidth();
+        cached[a + 5] = result.getAggregateHeight();
+        // followed by the indices of the aggregated items
+        int k = a + AGGREGATE_LENGTH;
+        for (int i = 0; i < result.size() && result.getAggregatedCount() > 0; i++) {
+            if (result.isAggregated(i)) {
+                cached[k++] = i;
+            }
+        }
+        entries.put(new Key(data, version, bounds, algorithm), cached);
+    }
+
+    /**
+     * Removes all the cached layouts. The counters are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     *
+     * @return the maximum number of cached layouts
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     *
+     * @return the number of cached layouts
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     *
+     * @return the number of layouts found in the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     *
+     * @return the number of versioned layouts not found in the cache
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     *
+     * @return the number of layouts removed to respect the capacity
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private static final class Key {
+
+        private final MapData data;
+        private final long version;
+        private final double width;
+        private final double height;
+        private final LayoutAlgorithm algorithm;
+
+        private Key(MapData mapData, long dataVersion, Rect bounds, LayoutAlgorithm layoutAlgorithm) {
+            data = mapData;
+            version = dataVersion;
+            width = bounds.getWidth();
+            height = bounds.getHeight();
+            algorithm = layoutAlgorithm;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return data.equals(other.data) && version == other.version
+                    && Double.compare(width, other.width) == 0
+                    && Double.compare(height, other.height) == 0
+                    && algorithm.equals(other.algorithm);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = data.hashCode();
+            hash = 31 * hash + Long.hashCode(version);
+            hash = 31 * hash + Double.hashCode(width);
+            hash = 31 * hash + Double.hashCode(height);
+            return 31 * hash + algorithm.hashCode();
+        }
+    }
+}
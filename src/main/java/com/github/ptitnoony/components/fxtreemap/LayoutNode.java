@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bounds computed for a MapData by a nested layout, along with the bounds of
+ * its children data when they were laid out.
+ *
+ * @author ahamon
+ */
+public class LayoutNode {
+
+    private static final LayoutNode[] NO_CHILDREN = new LayoutNode[0];
+
+    private final MapData data;
+    private final int depth;
+    private final double x;
+    private final double y;
+    private final double w;
+    private final double h;
+    private final long version;
+    private final long structureVersion;
+    private LayoutNode[] children;
+
+    /**
+     * Creates a new LayoutNode, without children. The versions of the data are
+     * recorded to tell whether it changed since it was laid out.
+     *
+     * @param nodeData the data laid out
+     * @param nodeDepth the depth of the data below the laid out root
+     * @param x coordinates along the X axis
+     * @param y coordinates along the Y axis
+     * @param w width
+     * @param h height
+     */
+    public LayoutNode(MapData nodeData, int nodeDepth, double x, double y, double w, double h) {
+        data = nodeData;
+        depth = nodeDepth;
+        this.x = x;
+        this.y = y;
+        this.w = w;
+        this.h = h;
+        version = nodeData.getVersion();
+        structureVersion = nodeData.getStructureVersion();
+        children = NO_CHILDREN;
+    }
+
+    private LayoutNode(LayoutNode node, double dx, double dy) {
+        data = node.data;
+        depth = node.depth;
+        x = node.x + dx;
+        y = node.y + dy;
+        w = node.w;
+        h = node.h;
+        version = node.version;
+        structureVersion = node.structureVersion;
+        children = new LayoutNode[node.children.length];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = new LayoutNode(node.children[i], dx, dy);
+        }
+    }
+
+    /**
+     * Get the data laid out.
+     *
+     * @return the data
+     */
+    public MapData getData() {
+        return data;
+    }
+
+    /**
+     * Get the depth of the node, the laid out root having depth 0.
+     *
+     * @return the node depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get x position.
+     *
+     * @return coordinates along the X axis
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Get y position.
+     *
+     * @return coordinates along the Y axis
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Get width.
+     *
+     * @return width
+     */
+    public double getWidth() {
+        return w;
+    }
+
+    /**
+     * Get height.
+     *
+     * @return height
+     */
+    public double getHeight() {
+        return h;
+    }
+
+    /**
+     * Tells whether the data or one of its descendants changed since this
+     * node was laid out. Data which changes are not tracked are always dirty.
+     *
+     * @return true if the layout of the subtree may be outdated
+     */
+    public boolean isDirty() {
+        return version == MapData.NO_VERSION || structureVersion == MapData.NO_VERSION
+                || version != data.getVersion() || structureVersion != data.getStructureVersion();
+    }
+
+    /**
+     * Get the number of children laid out in this node.
+     *
+     * @return the number of children nodes
+     */
+    public int getChildCount() {
+        return children.length;
+    }
+
+    /**
+     * Get a child node, in the order of the children data.
+     *
+     * @param index the child index
+     * @return the child node
+     */
+    public LayoutNode getChild(int index) {
+        return children[index];
+    }
+
+    /**
+     * Get the children nodes, in the order of the children data.
+     *
+     * @return an unmodifiable list of the children nodes
+     */
+    public List<LayoutNode> getChildren() {
+        return Collections.unmodifiableList(Arrays.asList(children));
+    }
+
+    void setChildren(LayoutNode[] childNodes) {
+        children = childNodes;
+    }
+
+    /**
+     * Tells whether the subtree of the given node can be used as the subtree
+     * of this node: same data, versions and size.
+     *
+     * @param node the node laid out previously
+     * @return true if the subtree of the given node is still valid
+     */
+    boolean canReuse(LayoutNode node) {
+        return version != MapData.NO_VERSION && structureVersion != MapData.NO_VERSION
+                && data.equals(node.data) && version == node.version && structureVersion == node.structureVersion
+                && w == node.w && h == node.h && depth == node.depth;
+    }
+
+    /**
+     * Get a copy of this subtree moved by the given offsets.
+     *
+     * @param dx the offset along the X axis
+     * @param dy the offset along the Y axis
+     * @return the moved subtree
+     */
+    LayoutNode translate(double dx, double dy) {
+        return new LayoutNode(this, dx, dy);
+    }
+}
@@ -0,0 +1,517 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.List;
+
+/**
+ * Struct-of-arrays buffer holding the sizes and computed bounds of the items
+ * of a layout. The arrays are grown on demand and reused across layouts so
+ * that laying out a level does not allocate any intermediate Rect.
+ *
+ * Entries are indexed by the position of the items in the laid out
+ * collection. The order in which the items were laid out, by descending size,
+ * is available through getOrder. As long as the number of items does not
+ * change, this order is kept from one layout to the next one and only
+ * repaired where sizes moved, so re-laying out the same items after a resize
+ * or a few value changes does not require a full sort.
+ *
+ * When laid out by an AggregatingLayout, the items below its minimum area
+ * share a single aggregate tile: they are given empty bounds, and the tile
+ * bounds are available through the getAggregate methods. Whatever the
+ * algorithm, the empty items are skipped: they are left out of the sort and
+ * of the layout and given empty bounds.
+ *
+ * A LayoutResult is not thread safe: each thread or view laying out items
+ * shall use its own instance.
+ *
+ * @author ahamon
+ */
+public class LayoutResult {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    // moves allowed per item to repair the previous order before sorting again
+    private static final int REPAIR_MOVES_PER_ITEM = 2;
+
+    private double[] sizes;
+    private int[] order;
+    private double[] prefixSums;
+    private double[] xs;
+    private double[] ys;
+    private double[] widths;
+    private double[] heights;
+    private int count;
+    private boolean orderSorted;
+    private int fullSortCount;
+    // changes of the order and bounds, telling whether rows are still valid
+    private long modCount = 0;
+    private IncrementalSquarifiedLayout.Rows rows = null;
+    private AggregatingLayout.Visible visible = null;
+    private int skippedCount;
+    private int aggregatedCount;
+    private double aggregateThreshold;
+    // allocated by the first aggregating layout
+    private boolean[] aggregatedFlags = null;
+    private double aggregateX;
+    private double aggregateY;
+    private double aggregateWidth;
+    private double aggregateHeight;
+
+    /**
+     * Creates an empty LayoutResult.
+     */
+    public LayoutResult() {
+        allocate(DEFAULT_CAPACITY);
+        count = 0;
+    }
+
+    /**
+     * Snapshots the sizes of the given items into the buffer. Negative and NaN
+     * sizes are replaced by 0 and counted as skipped. The order of the
+     * previous layout is kept if the number of items did not change.
+     *
+     * @param items the items to be laid out
+     * @param start index of the first item
+     * @param end index of the last item (inclusive)
+     */
+    void load(MapItem[] items, int start, int end) {
+        int newCount = end - start + 1;
+        if (newCount != count) {
+            reset(newCount);
+            resetOrder();
+        }
+        skippedCount = 0;
+        for (int i = 0; i < count; i++) {
+            double size = items[start + i].getSize();
+            if (size > 0) {
+                sizes[i] = size;
+            } else {
+                sizes[i] = 0;
+                skippedCount++;
+            }
+        }
+        aggregatedCount = 0;
+    }
+
+    /**
+     * Snapshots the values of the given data into the buffer, scaled so that
+     * their sizes add up to the given area. Negative and NaN values are
+     * replaced by 0 and counted as skipped. The order of the previous layout
+     * is kept if the number of data did not change.
+     *
+     * @param data the data to be laid out
+     * @param area the pixel area to share between the data
+     */
+    void load(List<MapData> data, double area) {
+        int newCount = data.size();
+        if (newCount != count) {
+            reset(newCount);
+            resetOrder();
+        }
+        double total = 0;
+        skippedCount = 0;
+        for (int i = 0; i < count; i++) {
+            double value = data.get(i).getValue();
+            if (value > 0) {
+                sizes[i] = value;
+                total += value;
+            } else {
+                sizes[i] = 0;
+                skippedCount++;
+            }
+        }
+        double scale = total > 0 ? area / total : 0;
+        for (int i = 0; i < count; i++) {
+            sizes[i] *= scale;
+        }
+        aggregatedCount = 0;
+    }
+
+    /**
+     * Snapshots the sizes of the visible items of the given result, followed
+     * by the size of the aggregate tile if any. The order of the previous
+     * layout is kept if the number of visible items did not change.
+     *
+     * @param source the result holding all the items
+     * @param indices the indices of the visible items in the source
+     * @param visibleCount the number of visible items
+     * @param withAggregate if an aggregate tile follows the visible items
+     * @param aggregatedSize the sum of the sizes of the aggregated items
+     */
+    void loadVisible(LayoutResult source, int[] indices, int visibleCount, boolean withAggregate, double aggregatedSize) {
+        int newCount = withAggregate ? visibleCount + 1 : visibleCount;
+        if (newCount != count) {
+            reset(newCount);
+            resetOrder();
+        }
+        for (int j = 0; j < visibleCount; j++) {
+            sizes[j] = source.sizes[indices[j]];
+        }
+        if (withAggregate) {
+            sizes[visibleCount] = aggregatedSize;
+        }
+        skippedCount = 0;
+        aggregatedCount = 0;
+    }
+
+    /**
+     * Resets the layout order to the order of the items. Used by algorithms
+     * laying out the items in their original order.
+     */
+    public void resetOrder() {
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        orderSorted = false;
+        modCount++;
+    }
+
+    /**
+     * Sorts the layout order by descending size, without moving the sizes. The
+     * order is first checked in a single pass and, if it comes from a previous
+     * sort, repaired with an insertion sort when only a few sizes moved.
+     */
+    public void sortDescending() {
+        int last = count - 1;
+        if (!TreeMapUtils.isSortedDescending(sizes, order, 0, last)) {
+            if (!(orderSorted && TreeMapUtils.repairDescending(sizes, order, 0, last, (long) REPAIR_MOVES_PER_ITEM * count))) {
+                TreeMapUtils.sortDescending(sizes, order, 0, last);
+                fullSortCount++;
+            }
+            modCount++;
+        }
+        orderSorted = true;
+    }
+
+    /**
+     * Computes the prefix sums of the sizes, in the layout order: the sum of
+     * the sizes of ranks [a, b] is prefixSums[b + 1] - prefixSums[a]. The
+     * returned array is owned by the result and reused across layouts.
+     *
+     * @return the prefix sums of the sizes
+     */
+    double[] computePrefixSums() {
+        if (prefixSums == null || prefixSums.length < count + 1) {
+            prefixSums = new double[sizes.length + 1];
+        }
+        prefixSums[0] = 0;
+        for (int rank = 0; rank < count; rank++) {
+            prefixSums[rank + 1] = prefixSums[rank] + sizes[order[rank]];
+        }
+        return prefixSums;
+    }
+
+    /**
+     * Get the number of times the layout order had to be fully sorted.
+     *
+     * @return the number of full sorts
+     */
+    int getFullSortCount() {
+        return fullSortCount;
+    }
+
+    /**
+     * Get the number of changes of the layout order and bounds, which tells
+     * whether they were modified since a given layout.
+     *
+     * @return the modification count
+     */
+    long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Get the rows committed by the last incremental squarified layout of
+     * this result, allocated on first use.
+     *
+     * @return the rows of the layout
+     */
+    IncrementalSquarifiedLayout.Rows getRows() {
+        if (rows == null) {
+            rows = new IncrementalSquarifiedLayout.Rows();
+        }
+        return rows;
+    }
+
+    /**
+     * Get the visible items of the last aggregating layout of this result,
+     * allocated on first use.
+     *
+     * @return the visible items of the layout
+     */
+    AggregatingLayout.Visible getVisible() {
+        if (visible == null) {
+            visible = new AggregatingLayout.Visible();
+        }
+        return visible;
+    }
+
+    /**
+     * Records the aggregate tile of the items marked with setAggregated.
+     *
+     * @param itemCount the number of aggregated items, 0 if none
+     * @param threshold the size below which items are aggregated
+     * @param x coordinates along the X axis
+     * @param y coordinates along the Y axis
+     * @param w width
+     * @param h height
+     */
+    void setAggregate(int itemCount, double threshold, double x, double y, double w, double h) {
+        aggregatedCount = itemCount;
+        aggregateThreshold = threshold;
+        aggregateX = x;
+        aggregateY = y;
+        aggregateWidth = w;
+        aggregateHeight = h;
+    }
+
+    /**
+     * Marks whether the given item is part of the aggregate tile.
+     *
+     * @param index the item index
+     * @param isAggregated if the item was aggregated
+     */
+    void setAggregated(int index, boolean isAggregated) {
+        if (aggregatedFlags == null || aggregatedFlags.length < sizes.length) {
+            aggregatedFlags = new boolean[sizes.length];
+        }
+        aggregatedFlags[index] = isAggregated;
+    }
+
+    /**
+     * Get the number of empty items, which are neither sorted nor laid out.
+     *
+     * @return the number of items skipped by the layout
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Tells whether the given item is empty, and thus was not laid out.
+     *
+     * @param index the item index
+     * @return if the item was skipped
+     */
+    public boolean isSkipped(int index) {
+        return skippedCount > 0 && sizes[index] == 0;
+    }
+
+    /**
+     * Get the number of items grouped into the aggregate tile.
+     *
+     * @return the number of aggregated items, 0 if there is no aggregate tile
+     */
+    public int getAggregatedCount() {
+        return aggregatedCount;
+    }
+
+    /**
+     * Get the size below which items were grouped into the aggregate tile.
+     *
+     * @return the aggregation threshold, meaningless without aggregate tile
+     */
+    public double getAggregateThreshold() {
+        return aggregateThreshold;
+    }
+
+    /**
+     * Tells whether the given item is part of the aggregate tile.
+     *
+     * @param index the item index
+     * @return if the item was aggregated
+     */
+    public boolean isAggregated(int index) {
+        return aggregatedCount > 0 && aggregatedFlags[index];
+    }
+
+    /**
+     *
+     * @return the x position of the aggregate tile
+     */
+    public double getAggregateX() {
+        return aggregateX;
+    }
+
+    /**
+     *
+     * @return the y position of the aggregate tile
+     */
+    public double getAggregateY() {
+        return aggregateY;
+    }
+
+    /**
+     *
+     * @return the width of the aggregate tile
+     */
+    public double getAggregateWidth() {
+        return aggregateWidth;
+    }
+
+    /**
+     *
+     * @return the height of the aggregate tile
+     */
+    public double getAggregateHeight() {
+        return aggregateHeight;
+    }
+
+    /**
+     * Writes the computed bounds back into the given items.
+     *
+     * @param items the items that were laid out
+     * @param start index of the first item
+     */
+    void applyTo(MapItem[] items, int start) {
+        for (int i = 0; i < count; i++) {
+            items[start + i].setBounds(xs[i], ys[i], widths[i], heights[i]);
+        }
+    }
+
+    /**
+     * Removes all the items from the layout.
+     */
+    void clear() {
+        count = 0;
+        skippedCount = 0;
+        aggregatedCount = 0;
+        orderSorted = false;
+        modCount++;
+    }
+
+    /**
+     * Get the number of items in the layout.
+     *
+     * @return the number of items
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the index of the item laid out at the given rank, the largest item
+     * having rank 0.
+     *
+     * @param rank the item rank in the layout
+     * @return the item index
+     */
+    public int getOrder(int rank) {
+        return order[rank];
+    }
+
+    /**
+     * Get the pixel area the given item was laid out with.
+     *
+     * @param index the item index
+     * @return the pixel area of the item
+     */
+    public double getSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * Get the x position of the given item.
+     *
+     * @param index the item index
+     * @return coordinates along the X axis
+     */
+    public double getX(int index) {
+        return xs[index];
+    }
+
+    /**
+     * Get the y position of the given item.
+     *
+     * @param index the item index
+     * @return coordinates along the Y axis
+     */
+    public double getY(int index) {
+        return ys[index];
+    }
+
+    /**
+     * Get the width of the given item.
+     *
+     * @param index the item index
+     * @return width
+     */
+    public double getWidth(int index) {
+        return widths[index];
+    }
+
+    /**
+     * Get the height of the given item.
+     *
+     * @param index the item index
+     * @return height
+     */
+    public double getHeight(int index) {
+        return heights[index];
+    }
+
+    /**
+     * Calculates the aspect ratio of the bounds of the given item.
+     *
+     * @param index the item index
+     * @return the item aspect ratio
+     */
+    public double aspectRatio(int index) {
+        return Math.max(widths[index] / heights[index], heights[index] / widths[index]);
+    }
+
+    /**
+     * Sets the bounds of the given item.
+     *
+     * @param index the item index
+     * @param x coordinates along the X axis
+     * @param y coordinates along the Y axis
+     * @param w width
+     * @param h height
+     */
+    public void setBounds(int index, double x, double y, double w, double h) {
+        xs[index] = x;
+        ys[index] = y;
+        widths[index] = w;
+        heights[index] = h;
+        modCount++;
+    }
+
+    private void reset(int newCount) {
+        if (newCount > sizes.length) {
+            allocate(Math.max(newCount, sizes.length + (sizes.length >> 1)));
+        }
+        count = newCount;
+        modCount++;
+    }
+
+    private void allocate(int capacity) {
+        sizes = new double[capacity];
+        order = new int[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        widths = new double[capacity];
+        heights = new double[capacity];
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * Coalesces layout requests into at most one layout per JavaFX pulse.
+ *
+ * Requests can be made from any thread. The layout runs on the JavaFX
+ * application thread, on the first pulse after the requests stopped for the
+ * quiet period, or at the latest once the maximum latency elapsed since the
+ * first pending request. The underlying AnimationTimer only runs while a
+ * layout is pending.
+ *
+ * @author ahamon
+ */
+public class LayoutScheduler {
+
+    private final Runnable layoutAction;
+    private final AtomicBoolean requested = new AtomicBoolean(false);
+
+    private volatile long firstRequestTime;
+    private volatile long lastRequestTime;
+    private volatile long quietPeriod;
+    private volatile long maxLatency;
+
+    private AnimationTimer timer = null;
+
+    /**
+     * Creates a LayoutScheduler.
+     *
+     * @param action the layout to be run
+     * @param quietPeriodMillis the time without request to wait for before
+     * running the layout, 0 to run it on the next pulse
+     * @param maxLatencyMillis the maximum time a request may wait for the
+     * layout
+     */
+    public LayoutScheduler(Runnable action, long quietPeriodMillis, long maxLatencyMillis) {
+        if (action == null) {
+            throw new IllegalArgumentException("action should not be null");
+        }
+        layoutAction = action;
+        setQuietPeriod(quietPeriodMillis);
+        setMaxLatency(maxLatencyMillis);
+    }
+
+    /**
+     * Requests a layout. Can be called from any thread.
+     */
+    public void request() {
+        if (markRequested(System.nanoTime())) {
+            if (Platform.isFxApplicationThread()) {
+                startTimer();
+            } else {
+                Platform.runLater(this::startTimer);
+            }
+        }
+    }
+
+    /**
+     * Set the time without request to wait for before running the layout.
+     *
+     * @param quietPeriodMillis the quiet period in milliseconds, 0 to run the
+     * layout on the next pulse
+     */
+    public final void setQuietPeriod(long quietPeriodMillis) {
+        if (quietPeriodMillis < 0) {
+            throw new IllegalArgumentException("quiet period shall be positive, but was " + quietPeriodMillis);
+        }
+        quietPeriod = TimeUnit.MILLISECONDS.toNanos(quietPeriodMillis);
+    }
+
+    /**
+     *
+     * @return the quiet period in milliseconds
+     */
+    public long getQuietPeriod() {
+        return TimeUnit.NANOSECONDS.toMillis(quietPeriod);
+    }
+
+    /**
+     * Set the maximum time a request may wait for the layout, even if requests
+     * keep coming.
+     *
+     * @param maxLatencyMillis the maximum latency in milliseconds
+     */
+    public final void setMaxLatency(long maxLatencyMillis) {
+        if (maxLatencyMillis < 0) {
+            throw new IllegalArgumentException("max latency shall be positive, but was " + maxLatencyMillis);
+        }
+        maxLatency = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+    }
+
+    /**
+     *
+     * @return the maximum latency in milliseconds
+     */
+    public long getMaxLatency() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatency);
+    }
+
+    /**
+     * Records a request.
+     *
+     * @param now the request time in nanoseconds
+     * @return if the request is the first pending one
+     */
+    boolean markRequested(long now) {
+        lastRequestTime = now;
+        if (requested.compareAndSet(false, true)) {
+            firstRequestTime = now;
+            lastRequestTime = now;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Runs the layout if one is pending and due.
+     *
+     * @param now the pulse time in nanoseconds
+     * @return if the layout was run
+     */
+    boolean pulse(long now) {
+        if (!requested.get()) {
+            return false;
+        }
+        if (now - lastRequestTime < quietPeriod && now - firstRequestTime < maxLatency) {
+            return false;
+        }
+        // requests made during the layout schedule a new one
+        requested.set(false);
+        layoutAction.run();
+        return true;
+    }
+
+    /**
+     *
+     * @return if a layout is pending
+     */
+    boolean isPending() {
+        return requested.get();
+    }
+
+    private void startTimer() {
+        if (timer == null) {
+            timer = new AnimationTimer() {
+                @Override
+                public void handle(long pulseTime) {
+                    pulse(System.nanoTime());
+                    if (!requested.get()) {
+                        stop();
+                    }
+                }
+            };
+        }
+        timer.start();
+    }
+}
@@ -40,6 +40,11 @@ public interface MapData {
         LEAF, NODE
     };
 
+    /**
+     * Version of the data that do not track their changes.
+     */
+    long NO_VERSION = -1;
+
     DataType getType();
 
     /**
@@ -58,6 +63,41 @@ public interface MapData {
      */
     void setValue(double newValue);
 
+    /**
+     * Get the version of the data values. The version changes each time the
+     * value of the data or of one of its children changes, or when a child is
+     * added or removed. Layouts of data without version, the default, are
+     * never cached.
+     *
+     * @return the data version, or NO_VERSION if changes are not tracked
+     */
+    default long getVersion() {
+        return NO_VERSION;
+    }
+
+    /**
+     * Get the version of the data structure. The version changes each time a
+     * child is added to or removed from the data or one of its descendants.
+     * Together with getVersion, it tells whether a subtree changed since it
+     * was laid out.
+     *
+     * @return the structure version, or NO_VERSION if changes are not tracked
+     */
+    default long getStructureVersion() {
+        return NO_VERSION;
+    }
+
+    /**
+     * Get an immutable snapshot of the data and of its descendants, which
+     * layouts can read while the data keeps changing. Data that do not
+     * support snapshots, the default, return themselves.
+     *
+     * @return the data snapshot
+     */
+    default MapData snapshot() {
+        return this;
+    }
+
     /**
      * Get the data name.
      *
@@ -101,6 +141,31 @@ public interface MapData {
      */
     void removeChildrenData(MapData data);
 
+    /**
+     * Add a listener of the value changes, notified without allocation. By
+     * default, the listener is notified through a property change listener
+     * of TreeMapUtils.MAP_DATA_VALUE_CHANGED events, which old value is NaN
+     * if the event does not hold it.
+     *
+     * @param listener the listener to be added
+     */
+    default void addValueListener(ValueListener listener) {
+        if (listener != null) {
+            addPropertyChangeListener(new ValueListeners.PropertyChangeAdapter(this, listener));
+        }
+    }
+
+    /**
+     * Remove a listener of the value changes.
+     *
+     * @param listener the listener to be removed
+     */
+    default void removeValueListener(ValueListener listener) {
+        if (listener != null) {
+            removePropertyChangeListener(new ValueListeners.PropertyChangeAdapter(this, listener));
+        }
+    }
+
     /**
      * Add a property change listener.
      *
@@ -25,9 +25,9 @@ package com.github.ptitnoony.components.fxtreemap;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -49,10 +49,13 @@ public class MapDataAdapter<T> implements CustomizableMapData<T> {
     private DataValueFunction<T> dataValueFunction;
     private DataNameFunction<T> dataNameFunction;
 
-    private final PropertyChangeSupport propertyChangeSupport;
+    // both allocated on the first registered listener
+    private PropertyChangeSupport propertyChangeSupport = null;
+    private ValueListener[] valueListeners = null;
     private String name;
     private double value;
     private double lastNotifiedValue;
+    private long version = 0;
     private final DataType dataType;
 
     /**
@@ -73,7 +76,6 @@ public class MapDataAdapter<T> implements CustomizableMapData<T> {
             throw new IllegalArgumentException("nameFunction should not be null");
         }
         //
-        propertyChangeSupport = new PropertyChangeSupport(MapDataAdapter.this);
         dataAdapters = Collections.EMPTY_LIST;
         dataObjectList = Collections.EMPTY_LIST;
         dataType = DataType.LEAF;
@@ -83,6 +85,7 @@ public class MapDataAdapter<T> implements CustomizableMapData<T> {
         //
         name = dataNameFunction.getName(dataObject);
         value = dataValueFunction.getValue(dataObject);
+        lastNotifiedValue = value;
     }
 
     /**
@@ -100,14 +103,13 @@ public class MapDataAdapter<T> implements CustomizableMapData<T> {
         if (valueFunction == null) {
             throw new IllegalArgumentException(VALUE_F_NULL_MESSAGE);
         }
-        propertyChangeSupport = new PropertyChangeSupport(MapDataAdapter.this);
         dataType = DataType.NODE;
         name = dataCollectionName;
         dataValueFunction = valueFunction;
         dataNameFunction = nameFunction;
         dataObject = null;
-        dataAdapters = new LinkedList<>();
-        dataObjectList = new LinkedList<>(dataObjects);
+        dataAdapters = new ArrayList<>();
+        dataObjectList = new ArrayList<>(dataObjects);
         dataObjectList.forEach(o -> dataAdapters.add(new MapDataAdapter<>(o, valueFunction, nameFunction)));
         recalculate();
         lastNotifiedValue = value;
@@ -130,14 +132,29 @@ public class MapDataAdapter<T> implements CustomizableMapData<T> {
         return dataType;
     }
 
+    @Override
+    public void addValueListener(ValueListener listener) {
+        valueListeners = ValueListeners.add(valueListeners, listener);
+    }
+
+    @Override
+    public void removeValueListener(ValueListener listener) {
+        valueListeners = ValueListeners.remove(valueListeners, listener);
+    }
+
     @Override
     public void addPropertyChangeListener(PropertyChangeListener listener) {
+        if (propertyChangeSupport == null) {
+            propertyChangeSupport = new PropertyChangeSupport(MapDataAdapter.this);
+        }
         propertyChangeSupport.addPropertyChangeListener(listener);
     }
 
     @Override
     public void removePropertyChangeListener(PropertyChangeListener listener) {
-        propertyChangeSupport.removePropertyChangeListener(listener);
+        if (propertyChangeSupport != null) {
+            propertyChangeSupport.removePropertyChangeListener(listener);
+        }
     }
 
     @Override
@@ -145,6 +162,17 @@ public class MapDataAdapter<T> implements CustomizableMapData<T> {
         return value;
     }
 
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public long getStructureVersion() {
+        // adapters cannot be added nor removed children
+        return 0;
+    }
+
     @Override
     public void setValue(double newValue) {
         LOG.log(Level.WARNING, "Setting value in a MapAdapter is not allowed ({0})", name);
@@ -219,14 +247,19 @@ public class MapDataAdapter<T> implements CustomizableMapData<T> {
             default ->
                 throw new IllegalArgumentException(UNKNOWN_TYPE + dataType);
         }
+        version++;
         notifyValueChanged();
     }
 
     private void notifyValueChanged() {
         // to prevent overflowing upper levels with unnecessary notifications
         if (Math.abs(value - lastNotifiedValue) > TreeMapUtils.EPSILON) {
-            propertyChangeSupport.firePropertyChange(TreeMapUtils.MAP_DATA_VALUE_CHANGED, null, value);
+            double oldValue = lastNotifiedValue;
             lastNotifiedValue = value;
+            ValueListeners.fire(valueListeners, this, oldValue, value);
+            if (propertyChangeSupport != null) {
+                propertyChangeSupport.firePropertyChange(TreeMapUtils.MAP_DATA_VALUE_CHANGED, oldValue, value);
+            }
         }
     }
 
@@ -0,0 +1,245 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Reads and writes MapData hierarchies in a compact binary format, which
+ * sections are the columns of an OffHeapMapDataStore.
+ *
+ * All numbers are little endian. A 32 bytes header holds the magic number, the
+ * format version, the number of nodes and the size of the names. It is
+ * followed by the sections, each starting on 8 bytes: values (double per
+ * node), parent indexes (int per node), children offsets (int per node plus
+ * one), name offsets and name lengths (int per node) and the UTF-8 names.
+ * Nodes are stored breadth first.
+ *
+ * Opened files are memory mapped: opening is immediate whatever the file size,
+ * and the operating system only loads the pages of the nodes being read.
+ *
+ * @author ahamon
+ */
+public final class MapDataFiles {
+
+    /**
+     * Magic number starting the files, "FXTM".
+     */
+    public static final int MAGIC = 0x4D545846;
+
+    /**
+     * Version of the format written.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private MapDataFiles() {
+        // utility class
+    }
+
+    /**
+     * Writes the given hierarchy to a file. The hierarchy is read twice,
+     * breadth first, and streamed to the file sections without being copied.
+     *
+     * @param root the root of the hierarchy
+     * @param path the file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(MapData root, Path path) throws IOException {
+        if (root == null) {
+            throw new IllegalArgumentException("root should not be null");
+        }
+        int count = 0;
+        Deque<MapData> pending = new ArrayDeque<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            count++;
+            pending.addAll(pending.poll().getChildrenData());
+        }
+        long[] offsets = sectionOffsets(count);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            SectionWriter values = new SectionWriter(channel, offsets[0]);
+            SectionWriter parents = new SectionWriter(channel, offsets[1]);
+            SectionWriter childOffsets = new SectionWriter(channel, offsets[2]);
+            SectionWriter nameStarts = new SectionWriter(channel, offsets[3]);
+            SectionWriter nameLengths = new SectionWriter(channel, offsets[4]);
+            SectionWriter names = new SectionWriter(channel, offsets[5]);
+            long namesSize = 0;
+            pending.add(root);
+            int node = 0;
+            int nextChild = 1;
+            parents.putInt(MapDataStore.NO_PARENT);
+            while (!pending.isEmpty()) {
+                MapData data = pending.poll();
+                childOffsets.putInt(nextChild);
+                for (MapData child : data.getChildrenData()) {
+                    parents.putInt(node);
+                    pending.add(child);
+                    nextChild++;
+                }
+                values.putDouble(data.getValue());
+                byte[] name = data.getName() == null ? new byte[0] : data.getName().getBytes(StandardCharsets.UTF_8);
+                nameStarts.putInt((int) namesSize);
+                nameLengths.putInt(name.length);
+                names.putBytes(name);
+                namesSize += name.length;
+                if (namesSize > Integer.MAX_VALUE) {
+                    throw new IOException("names shall fit in 2GB, but take more than " + namesSize + " bytes");
+                }
+                node++;
+            }
+            childOffsets.putInt(count);
+            for (SectionWriter section : new SectionWriter[]{values, parents, childOffsets, nameStarts, nameLengths, names}) {
+                section.flush();
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(count).putInt(0).putLong(namesSize).putLong(0).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+    }
+
+    /**
+     * Opens a file written by write. The returned store reads the file
+     * through memory mappings; changes made to the store are kept in memory
+     * and never written back to the file. If the file is not writable, the
+     * store values cannot be changed.
+     *
+     * @param path the file to open
+     * @return a store backed by the file
+     * @throws IOException if the file cannot be read or is not a treemap file
+     */
+    public static OffHeapMapDataStore open(Path path) throws IOException {
+        boolean writable = Files.isWritable(path);
+        try (FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY;
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(path + " is not a treemap file");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a treemap file");
+            }
+            if (header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Unsupported treemap file version " + header.getInt(4) + " in " + path);
+            }
+            int count = header.getInt(8);
+            long namesSize = header.getLong(16);
+            long[] offsets = sectionOffsets(count);
+            if (count < 1 || namesSize > Integer.MAX_VALUE || channel.size() < offsets[5] + namesSize) {
+                throw new IOException(path + " is truncated or corrupted");
+            }
+            // the mappings remain valid once the channel is closed
+            return new OffHeapMapDataStore(count,
+                    map(channel, mode, offsets[1], 4L * count).asIntBuffer(),
+                    map(channel, mode, offsets[2], 4L * (count + 1)).asIntBuffer(),
+                    map(channel, mode, offsets[0], 8L * count).asDoubleBuffer(),
+                    map(channel, mode, offsets[3], 4L * count).asIntBuffer(),
+                    map(channel, mode, offsets[4], 4L * count).asIntBuffer(),
+                    map(channel, mode, offsets[5], namesSize),
+                    (int) namesSize);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long offset, long size) throws IOException {
+        return channel.map(mode, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long[] sectionOffsets(int count) {
+        long values = HEADER_SIZE;
+        long parents = align(values + 8L * count);
+        long childOffsets = align(parents + 4L * count);
+        long nameStarts = align(childOffsets + 4L * (count + 1));
+        long nameLengths = align(nameStarts + 4L * count);
+        long names = align(nameLengths + 4L * count);
+        return new long[]{values, parents, childOffsets, nameStarts, nameLengths, names};
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Buffered sequential writer of a file section.
+     */
+    private static final class SectionWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        private SectionWriter(FileChannel fileChannel, long start) {
+            channel = fileChannel;
+            position = start;
+        }
+
+        private void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        private void putDouble(double value) throws IOException {
+            ensureRemaining(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        private void putBytes(byte[] bytes) throws IOException {
+            int written = 0;
+            while (written < bytes.length) {
+                ensureRemaining(1);
+                int length = Math.min(buffer.remaining(), bytes.length - written);
+                buffer.put(bytes, written, length);
+                written += length;
+            }
+        }
+
+        private void ensureRemaining(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
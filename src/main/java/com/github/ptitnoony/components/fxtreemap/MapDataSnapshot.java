@@ -0,0 +1,295 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.beans.PropertyChangeListener;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Immutable MapData. The value of a node is the sum of its children values.
+ * Changes are applied by path copying: a changed snapshot shares all the
+ * nodes but the ones on the path to the change with the original snapshot.
+ *
+ * @author ahamon
+ */
+public final class MapDataSnapshot implements MapData {
+
+    private static final Logger LOG = Logger.getGlobal();
+    private static final MapDataSnapshot[] NO_CHILDREN = new MapDataSnapshot[0];
+
+    private final DataType dataType;
+    private final String name;
+    private final double value;
+    private final long version;
+    private final long structureVersion;
+    private final MapDataSnapshot[] children;
+
+    private MapDataSnapshot(DataType type, String dataName, double dataValue, long dataVersion, long dataStructureVersion, MapDataSnapshot[] childrenSnapshots) {
+        dataType = type;
+        name = dataName;
+        value = dataValue;
+        version = dataVersion;
+        structureVersion = dataStructureVersion;
+        children = childrenSnapshots;
+    }
+
+    private MapDataSnapshot(DataType type, String dataName, long dataVersion, long dataStructureVersion, MapDataSnapshot[] childrenSnapshots) {
+        this(type, dataName, sum(childrenSnapshots), dataVersion, dataStructureVersion, childrenSnapshots);
+    }
+
+    /**
+     * Creates a snapshot of the given data hierarchy.
+     *
+     * @param data the root of the hierarchy to be copied
+     * @return the snapshot of the hierarchy
+     */
+    public static MapDataSnapshot copyOf(MapData data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data should not be null");
+        }
+        if (data instanceof MapDataSnapshot) {
+            return (MapDataSnapshot) data;
+        }
+        List<MapData> childrenData = data.getChildrenData();
+        if (childrenData.isEmpty()) {
+            return new MapDataSnapshot(data.getType(), data.getName(), data.getValue(), 0, 0, NO_CHILDREN);
+        }
+        MapDataSnapshot[] childrenSnapshots = new MapDataSnapshot[childrenData.size()];
+        for (int i = 0; i < childrenSnapshots.length; i++) {
+            childrenSnapshots[i] = copyOf(childrenData.get(i));
+        }
+        return new MapDataSnapshot(data.getType(), data.getName(), 0, 0, childrenSnapshots);
+    }
+
+    @Override
+    public DataType getType() {
+        return dataType;
+    }
+
+    @Override
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public long getStructureVersion() {
+        return structureVersion;
+    }
+
+    @Override
+    public MapData snapshot() {
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean hasChildrenData() {
+        return children.length > 0;
+    }
+
+    @Override
+    public List<MapData> getChildrenData() {
+        return new ChildrenSnapshots(children);
+    }
+
+    /**
+     * Get the child snapshot at the given index.
+     *
+     * @param index the index of the child
+     * @return the child snapshot
+     */
+    public MapDataSnapshot getChild(int index) {
+        return children[index];
+    }
+
+    @Override
+    public void setValue(double newValue) {
+        LOG.log(Level.WARNING, "Setting value in a MapDataSnapshot is not allowed ({0})", name);
+    }
+
+    @Override
+    public void setName(String newName) {
+        LOG.log(Level.WARNING, "Setting name in a MapDataSnapshot is not allowed ({0})", name);
+    }
+
+    @Override
+    public void addChildrenData(MapData data) {
+        LOG.log(Level.WARNING, "Adding children in a MapDataSnapshot is not allowed ({0})", name);
+    }
+
+    @Override
+    public void removeChildrenData(MapData data) {
+        LOG.log(Level.WARNING, "Removing children in a MapDataSnapshot is not allowed ({0})", name);
+    }
+
+    @Override
+    public void addValueListener(ValueListener listener) {
+        // never changes
+    }
+
+    @Override
+    public void removeValueListener(ValueListener listener) {
+        // never changes
+    }
+
+    @Override
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        // never changes
+    }
+
+    @Override
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        // never changes
+    }
+
+    /**
+     * Get the snapshot of the descendant at the given path.
+     *
+     * @param path the children indexes leading to the descendant
+     * @return the descendant snapshot, null if there is none at this path
+     */
+    MapDataSnapshot get(int[] path) {
+        MapDataSnapshot node = this;
+        for (int index : path) {
+            if (index >= node.children.length) {
+                return null;
+            }
+            node = node.children[index];
+        }
+        return node;
+    }
+
+    /**
+     * Copies the path to the given descendant, replaced by the result of the
+     * given change. The values of the copied ancestors are summed again.
+     *
+     * @param path the children indexes leading to the descendant
+     * @param depth the index in the path of the child of this snapshot
+     * @param change the change applied to the descendant
+     * @return the changed snapshot
+     */
+    MapDataSnapshot with(int[] path, int depth, UnaryOperator<MapDataSnapshot> change) {
+        if (depth == path.length) {
+            return change.apply(this);
+        }
+        MapDataSnapshot child = children[path[depth]];
+        MapDataSnapshot newChild = child.with(path, depth + 1, change);
+        if (newChild == child) {
+            return this;
+        }
+        MapDataSnapshot[] newChildren = children.clone();
+        newChildren[path[depth]] = newChild;
+        long newStructureVersion = newChild.structureVersion == child.structureVersion ? structureVersion : structureVersion + 1;
+        return new MapDataSnapshot(dataType, name, version + 1, newStructureVersion, newChildren);
+    }
+
+    /**
+     * Get a copy of this snapshot with the given value. The children values
+     * are scaled to match the new value.
+     *
+     * @param newValue the new value
+     * @return the changed snapshot
+     */
+    MapDataSnapshot withValue(double newValue) {
+        if (children.length == 0) {
+            return new MapDataSnapshot(dataType, name, newValue, version + 1, structureVersion, NO_CHILDREN);
+        }
+        return scaled(newValue < TreeMapUtils.EPSILON ? 0.0 : newValue / value);
+    }
+
+    /**
+     * Get a copy of this snapshot with the given name.
+     *
+     * @param newName the new name
+     * @return the changed snapshot
+     */
+    MapDataSnapshot withName(String newName) {
+        return new MapDataSnapshot(dataType, newName, value, version + 1, structureVersion, children);
+    }
+
+    /**
+     * Get a copy of this snapshot with the given child appended.
+     *
+     * @param child the child to be added
+     * @return the changed snapshot
+     */
+    MapDataSnapshot withChild(MapDataSnapshot child) {
+        MapDataSnapshot[] newChildren = Arrays.copyOf(children, children.length + 1);
+        newChildren[children.length] = child;
+        return new MapDataSnapshot(dataType, name, version + 1, structureVersion + 1, newChildren);
+    }
+
+    private MapDataSnapshot scaled(double ratio) {
+        if (children.length == 0) {
+            return new MapDataSnapshot(dataType, name, value * ratio, version + 1, structureVersion, NO_CHILDREN);
+        }
+        MapDataSnapshot[] newChildren = new MapDataSnapshot[children.length];
+        for (int i = 0; i < children.length; i++) {
+            newChildren[i] = children[i].scaled(ratio);
+        }
+        return new MapDataSnapshot(dataType, name, version + 1, structureVersion, newChildren);
+    }
+
+    private static double sum(MapDataSnapshot[] snapshots) {
+        double sum = 0;
+        for (MapDataSnapshot snapshot : snapshots) {
+            sum += snapshot.value;
+        }
+        return sum;
+    }
+
+    private static final class ChildrenSnapshots extends AbstractList<MapData> implements RandomAccess {
+
+        private final MapDataSnapshot[] snapshots;
+
+        private ChildrenSnapshots(MapDataSnapshot[] childrenSnapshots) {
+            snapshots = childrenSnapshots;
+        }
+
+        @Override
+        public MapData get(int index) {
+            return snapshots[index];
+        }
+
+        @Override
+        public int size() {
+            return snapshots.length;
+        }
+    }
+}
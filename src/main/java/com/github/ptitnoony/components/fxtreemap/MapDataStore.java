@@ -0,0 +1,401 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base class of the MapData hierarchies stored as flat columns instead of one
+ * object per node, for data sets of millions of nodes.
+ *
+ * Nodes are identified by their index, in breadth first order: the root is
+ * the node 0 and the children of a node are contiguous and placed after their
+ * parent. The MapData instances handed out are lightweight views created on
+ * demand, two views of the same node being equal. Listeners are only stored
+ * for the nodes which have some.
+ *
+ * The structure of the hierarchy is fixed: only the values and names can be
+ * changed. The value of a node with children is the sum of its children
+ * values. A node without children is a LEAF.
+ *
+ * @author ahamon
+ */
+public abstract class MapDataStore {
+
+    private static final Logger LOG = Logger.getGlobal();
+
+    /**
+     * Parent index of the root node.
+     */
+    public static final int NO_PARENT = -1;
+
+    private final Map<Integer, PropertyChangeSupport> listeners = new HashMap<>();
+    private final Map<Integer, ValueListener[]> valueListeners = new HashMap<>();
+    private long version = 0;
+
+    /**
+     *
+     * @return the number of nodes in the hierarchy
+     */
+    public abstract int getNodeCount();
+
+    /**
+     *
+     * @param node the node index
+     * @return the index of the node parent, or NO_PARENT for the root
+     */
+    public abstract int getParent(int node);
+
+    /**
+     *
+     * @param node the node index
+     * @return the index of the node first child
+     */
+    public abstract int getFirstChild(int node);
+
+    /**
+     *
+     * @param node the node index
+     * @return the number of children of the node
+     */
+    public abstract int getChildCount(int node);
+
+    /**
+     *
+     * @param node the node index
+     * @return the node value
+     */
+    public abstract double getValue(int node);
+
+    /**
+     *
+     * @param node the node index
+     * @return the node name
+     */
+    public abstract String getName(int node);
+
+    /**
+     * Stores the value of a node, without updating its parents.
+     *
+     * @param node the node index
+     * @param value the new node value
+     */
+    protected abstract void storeValue(int node, double value);
+
+    /**
+     * Stores the name of a node.
+     *
+     * @param node the node index
+     * @param name the new node name
+     */
+    protected abstract void storeName(int node, String name);
+
+    /**
+     * Get the root of the hierarchy.
+     *
+     * @return a view of the root node
+     */
+    public MapData getRoot() {
+        return getData(0);
+    }
+
+    /**
+     * Get a view of the given node.
+     *
+     * @param node the node index
+     * @return a view of the node
+     */
+    public MapData getData(int node) {
+        if (node < 0 || node >= getNodeCount()) {
+            throw new IllegalArgumentException("node index shall be in [0, " + getNodeCount() + "[, but was " + node);
+        }
+        return new NodeData(node);
+    }
+
+    /**
+     * Get the version of the values, shared by all the nodes, which changes
+     * each time a value of the hierarchy is changed.
+     *
+     * @return the values version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the value of a node. The values of the node descendants are scaled
+     * by the same ratio and the change is propagated to the node ancestors.
+     *
+     * @param node the node index
+     * @param newValue the new value, equal or greater to 0
+     */
+    public void setValue(int node, double newValue) {
+        if (newValue < 0.0) {
+            LOG.log(Level.WARNING, "Ignoring set of a negative value ({0} for {1}", new Object[]{newValue, getName(node)});
+            return;
+        }
+        double oldValue = getValue(node);
+        if (getChildCount(node) > 0) {
+            if (oldValue < TreeMapUtils.EPSILON && newValue >= TreeMapUtils.EPSILON) {
+                LOG.log(Level.WARNING, "Ignoring set of the value of {0}: its children have no value to scale", getName(node));
+                return;
+            }
+            scaleDescendants(node, newValue < TreeMapUtils.EPSILON ? 0.0 : newValue / oldValue);
+        }
+        storeValue(node, newValue);
+        version++;
+        fireValueChanged(node, oldValue);
+        double delta = newValue - oldValue;
+        for (int parent = getParent(node); parent != NO_PARENT; parent = getParent(parent)) {
+            double parentOldValue = getValue(parent);
+            storeValue(parent, parentOldValue + delta);
+            if (Math.abs(delta) > TreeMapUtils.EPSILON) {
+                fireValueChanged(parent, parentOldValue);
+            }
+        }
+    }
+
+    /**
+     * Sets the name of a node.
+     *
+     * @param node the node index
+     * @param newName the new name
+     */
+    public void setName(int node, String newName) {
+        storeName(node, newName);
+    }
+
+    /**
+     * Recomputes the values of all the nodes with children from the values of
+     * the leaves.
+     */
+    public void recalculate() {
+        sumValues();
+        version++;
+    }
+
+    /**
+     * Stores in each node with children the sum of its children values.
+     * Children being placed after their parent, a single reverse pass over the
+     * nodes is enough.
+     */
+    protected void sumValues() {
+        int count = getNodeCount();
+        for (int node = 0; node < count; node++) {
+            if (getChildCount(node) > 0) {
+                storeValue(node, 0);
+            }
+        }
+        for (int node = count - 1; node > 0; node--) {
+            int parent = getParent(node);
+            storeValue(parent, getValue(parent) + getValue(node));
+        }
+    }
+
+    private void scaleDescendants(int node, double ratio) {
+        // descendants are placed after their ancestors: a forward pass over
+        // the children ranges reaches the whole subtree
+        int first = getFirstChild(node);
+        int end = first + getChildCount(node);
+        while (first < end) {
+            int nextFirst = Integer.MAX_VALUE;
+            int nextEnd = first;
+            for (int child = first; child < end; child++) {
+                double childOldValue = getValue(child);
+                storeValue(child, childOldValue * ratio);
+                fireValueChanged(child, childOldValue);
+                if (getChildCount(child) > 0) {
+                    nextFirst = Math.min(nextFirst, getFirstChild(child));
+                    nextEnd = Math.max(nextEnd, getFirstChild(child) + getChildCount(child));
+                }
+            }
+            first = nextFirst;
+            end = nextEnd;
+        }
+    }
+
+    private void fireValueChanged(int node, double oldValue) {
+        if (!valueListeners.isEmpty()) {
+            ValueListener[] nodeListeners = valueListeners.get(node);
+            if (nodeListeners != null) {
+                ValueListeners.fire(nodeListeners, getData(node), oldValue, getValue(node));
+            }
+        }
+        if (!listeners.isEmpty()) {
+            PropertyChangeSupport support = listeners.get(node);
+            if (support != null) {
+                support.firePropertyChange(TreeMapUtils.MAP_DATA_VALUE_CHANGED, oldValue, getValue(node));
+            }
+        }
+    }
+
+    private final class NodeData implements MapData {
+
+        private final int index;
+
+        private NodeData(int nodeIndex) {
+            index = nodeIndex;
+        }
+
+        @Override
+        public DataType getType() {
+            return getChildCount(index) > 0 ? DataType.NODE : DataType.LEAF;
+        }
+
+        @Override
+        public double getValue() {
+            return MapDataStore.this.getValue(index);
+        }
+
+        @Override
+        public void setValue(double newValue) {
+            MapDataStore.this.setValue(index, newValue);
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public long getStructureVersion() {
+            // the store structure is fixed
+            return 0;
+        }
+
+        @Override
+        public String getName() {
+            return MapDataStore.this.getName(index);
+        }
+
+        @Override
+        public void setName(String newName) {
+            MapDataStore.this.setName(index, newName);
+        }
+
+        @Override
+        public boolean hasChildrenData() {
+            return getChildCount(index) > 0;
+        }
+
+        @Override
+        public List<MapData> getChildrenData() {
+            return new ChildrenData(getFirstChild(index), getChildCount(index));
+        }
+
+        @Override
+        public void addChildrenData(MapData data) {
+            LOG.log(Level.WARNING, "Adding children in a MapDataStore is not allowed ({0})", getName());
+        }
+
+        @Override
+        public void removeChildrenData(MapData data) {
+            LOG.log(Level.WARNING, "Removing children in a MapDataStore is not allowed ({0})", getName());
+        }
+
+        @Override
+        public void addValueListener(ValueListener listener) {
+            valueListeners.put(index, ValueListeners.add(valueListeners.get(index), listener));
+        }
+
+        @Override
+        public void removeValueListener(ValueListener listener) {
+            ValueListener[] nodeListeners = ValueListeners.remove(valueListeners.get(index), listener);
+            if (nodeListeners == null) {
+                valueListeners.remove(index);
+            } else {
+                valueListeners.put(index, nodeListeners);
+            }
+        }
+
+        @Override
+        public void addPropertyChangeListener(PropertyChangeListener listener) {
+            listeners.computeIfAbsent(index, i -> new PropertyChangeSupport(this)).addPropertyChangeListener(listener);
+        }
+
+        @Override
+        public void removePropertyChangeListener(PropertyChangeListener listener) {
+            PropertyChangeSupport support = listeners.get(index);
+            if (support != null) {
+                support.removePropertyChangeListener(listener);
+                if (!support.hasListeners(null)) {
+                    listeners.remove(index);
+                }
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof NodeData)) {
+                return false;
+            }
+            NodeData other = (NodeData) obj;
+            return index == other.index && getStore() == other.getStore();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(getStore()) + index;
+        }
+
+        private MapDataStore getStore() {
+            return MapDataStore.this;
+        }
+    }
+
+    private final class ChildrenData extends AbstractList<MapData> implements RandomAccess {
+
+        private final int firstChild;
+        private final int childCount;
+
+        private ChildrenData(int first, int count) {
+            firstChild = first;
+            childCount = count;
+        }
+
+        @Override
+        public MapData get(int index) {
+            if (index < 0 || index >= childCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + childCount);
+            }
+            return new NodeData(firstChild + index);
+        }
+
+        @Override
+        public int size() {
+            return childCount;
+        }
+    }
+}
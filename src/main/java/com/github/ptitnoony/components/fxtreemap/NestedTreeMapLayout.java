@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Lays out a whole MapData hierarchy, or its top levels, in a single pass.
+ * Each node is laid out with a TreeMapLayout inside the bounds of its parent,
+ * and independent sibling subtrees are laid out in parallel on a ForkJoinPool.
+ *
+ * Like TreeMapLayout, a NestedTreeMapLayout holds no layout state and can be
+ * shared between views and threads. It keeps at most one reusable buffer per
+ * thread of its pool, which are released with the layout.
+ *
+ * @author ahamon
+ */
+public class NestedTreeMapLayout {
+
+    private final TreeMapLayout treeMapLayout;
+    private final ForkJoinPool forkJoinPool;
+    // buffers are read entirely before subtasks are forked, so that a task
+    // only holds one while it runs
+    private final BlockingQueue<LayoutResult> buffers;
+
+    /**
+     * Creates a NestedTreeMapLayout using the given layout for each level and
+     * running on the given pool.
+     *
+     * @param layout the layout applied to the children of each node
+     * @param pool the pool sibling subtrees are laid out on
+     */
+    public NestedTreeMapLayout(TreeMapLayout layout, ForkJoinPool pool) {
+        if (layout == null) {
+            throw new IllegalArgumentException("layout should not be null");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("pool should not be null");
+        }
+        treeMapLayout = layout;
+        forkJoinPool = pool;
+        buffers = new ArrayBlockingQueue<>(pool.getParallelism());
+    }
+
+    /**
+     * Creates a NestedTreeMapLayout running on the common ForkJoinPool.
+     */
+    public NestedTreeMapLayout() {
+        this(new TreeMapLayout(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     *
+     * @return the layout used for each level
+     */
+    public TreeMapLayout getTreeMapLayout() {
+        return treeMapLayout;
+    }
+
+    /**
+     * Lays out the whole hierarchy of the given data.
+     *
+     * @param root the root of the hierarchy
+     * @param bounds the bounds to lay the root in
+     * @return the root layout node
+     */
+    public LayoutNode layout(MapData root, Rect bounds) {
+        return layout(root, bounds, Integer.MAX_VALUE, 0);
+    }
+
+    /**
+     * Lays out the given data hierarchy, down to the given depth. A depth of 1
+     * only lays out the root children, as a TreeMapLayout would. The layout
+     * nodes refer to the snapshot of the hierarchy, when the data supports
+     * snapshots.
+     *
+     * @param root the root of the hierarchy
+     * @param bounds the bounds to lay the root in
+     * @param maxDepth the number of levels to lay out below the root
+     * @param inset the margin kept inside each node around its children
+     * @return the root layout node
+     */
+    public LayoutNode layout(MapData root, Rect bounds, int maxDepth, double inset) {
+        return layout(root, bounds, maxDepth, inset, null);
+    }
+
+    /**
+     * Lays out the given data hierarchy, down to the given depth, reusing the
+     * subtrees of a previous layout which data did not change. A clean subtree
+     * which size did not change is reused as is, or moved when only its
+     * position changed, without running the layout algorithm.
+     *
+     * @param root the root of the hierarchy
+     * @param bounds the bounds to lay the root in
+     * @param maxDepth the number of levels to lay out below the root
+     * @param inset the margin kept inside each node around its children
+     * @param previous the previous layout of the root with the same depth and
+     * inset, may be null
+     * @return the root layout node
+     */
+    public LayoutNode layout(MapData root, Rect bounds, int maxDepth, double inset, LayoutNode previous) {
+        LayoutNode rootNode = new LayoutNode(root.snapshot(), 0, bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+        if (previous != null && rootNode.canReuse(previous)) {
+            return reuse(rootNode, previous);
+        }
+        if (maxDepth > 0 && root.hasChildrenData()) {
+            forkJoinPool.invoke(new NodeLayoutTask(rootNode, maxDepth, inset, previous));
+        }
+        return rootNode;
+    }
+
+    private static LayoutNode reuse(LayoutNode node, LayoutNode previous) {
+        if (node.getX() == previous.getX() && node.getY() == previous.getY()) {
+            return previous;
+        }
+        return previous.translate(node.getX() - previous.getX(), node.getY() - previous.getY());
+    }
+
+    private final class NodeLayoutTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient LayoutNode node;
+        private final transient LayoutNode previous;
+        private final int maxDepth;
+        private final double inset;
+
+        private NodeLayoutTask(LayoutNode layoutNode, int depthLimit, double nodeInset, LayoutNode previousNode) {
+            node = layoutNode;
+            maxDepth = depthLimit;
+            inset = nodeInset;
+            previous = previousNode;
+        }
+
+        @Override
+        protected void compute() {
+            List<MapData> childrenData = node.getData().getChildrenData();
+            int nbChildren = childrenData.size();
+            double x = node.getX() + inset;
+            double y = node.getY() + inset;
+            double w = Math.max(0, node.getWidth() - 2 * inset);
+            double h = Math.max(0, node.getHeight() - 2 * inset);
+            LayoutResult buffer = buffers.poll();
+            LayoutResult result = buffer == null ? new LayoutResult() : buffer;
+            result.load(childrenData, w * h);
+            // the kept order is the one of another node, and would make ties
+            // depend on which buffer the task got
+            result.resetOrder();
+            treeMapLayout.layoutSizes(result, x, y, w, h);
+            //
+            int childDepth = node.getDepth() + 1;
+            LayoutNode[] childNodes = new LayoutNode[nbChildren];
+            // previous children are matched by index, each checking its data:
+            // the node data itself may be a new snapshot of the same data
+            boolean sameChildren = previous != null && previous.getChildCount() == nbChildren;
+            List<NodeLayoutTask> subTasks = new ArrayList<>();
+            for (int i = 0; i < nbChildren; i++) {
+                MapData childData = childrenData.get(i);
+                childNodes[i] = new LayoutNode(childData, childDepth, result.getX(i), result.getY(i), result.getWidth(i), result.getHeight(i));
+                LayoutNode previousChild = sameChildren ? previous.getChild(i) : null;
+                if (previousChild != null && childNodes[i].canReuse(previousChild)) {
+                    childNodes[i] = reuse(childNodes[i], previousChild);
+                } else if (childDepth < maxDepth && childData.hasChildrenData()
+                        && !result.isSkipped(i) && !result.isAggregated(i)) {
+                    subTasks.add(new NodeLayoutTask(childNodes[i], maxDepth, inset, previousChild));
+                }
+            }
+            node.setChildren(childNodes);
+            // dropped when the pool already holds one per thread
+            buffers.offer(result);
+            invokeAll(subTasks);
+        }
+    }
+}
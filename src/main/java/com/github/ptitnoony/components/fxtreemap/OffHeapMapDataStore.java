@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * MapDataStore keeping its columns in direct buffers, outside of the Java
+ * heap: parent indexes, children offsets, values and, for the names, offsets
+ * and lengths in a buffer of UTF-8 bytes. The heap cost of the store does not
+ * depend on the number of nodes, which keeps hierarchies of tens of millions of
+ * nodes out of the garbage collector's way.
+ *
+ * @author ahamon
+ */
+public class OffHeapMapDataStore extends MapDataStore {
+
+    private final int nodeCount;
+    private final IntBuffer parents;
+    // children of node i are the nodes [childOffsets[i], childOffsets[i + 1][
+    private final IntBuffer childOffsets;
+    private final DoubleBuffer values;
+    private final IntBuffer nameStarts;
+    private final IntBuffer nameLengths;
+    private ByteBuffer names;
+    private int namesSize;
+
+    /**
+     * Creates a store over the given columns, the name bytes being followed
+     * by free space.
+     */
+    OffHeapMapDataStore(int count, IntBuffer parentColumn, IntBuffer childOffsetColumn, DoubleBuffer valueColumn,
+            IntBuffer nameStartColumn, IntBuffer nameLengthColumn, ByteBuffer nameBytes, int nameBytesSize) {
+        nodeCount = count;
+        parents = parentColumn;
+        childOffsets = childOffsetColumn;
+        values = valueColumn;
+        nameStarts = nameStartColumn;
+        nameLengths = nameLengthColumn;
+        names = nameBytes;
+        namesSize = nameBytesSize;
+    }
+
+    /**
+     * Copies the given hierarchy into a new off heap store.
+     *
+     * @param root the root of the hierarchy to copy
+     * @return the store holding the copied hierarchy
+     */
+    public static OffHeapMapDataStore copyOf(MapData root) {
+        if (root == null) {
+            throw new IllegalArgumentException("root should not be null");
+        }
+        // a first pass sizes the buffers
+        int count = 0;
+        long nameBytes = 0;
+        Deque<MapData> pending = new ArrayDeque<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            MapData data = pending.poll();
+            count++;
+            nameBytes += encode(data.getName()).length;
+            pending.addAll(data.getChildrenData());
+        }
+        OffHeapMapDataStore store = allocate(count, checkedSize(nameBytes));
+        // breadth first, as in the store
+        pending.add(root);
+        int node = 0;
+        int nextChild = 1;
+        while (!pending.isEmpty()) {
+            MapData data = pending.poll();
+            store.childOffsets.put(node, nextChild);
+            for (MapData child : data.getChildrenData()) {
+                store.parents.put(nextChild++, node);
+                pending.add(child);
+            }
+            store.values.put(node, data.getValue());
+            store.appendName(node, data.getName());
+            node++;
+        }
+        store.parents.put(0, NO_PARENT);
+        store.childOffsets.put(count, count);
+        store.sumValues();
+        return store;
+    }
+
+    /**
+     * Copies the given store into a new off heap store.
+     *
+     * @param source the store to copy
+     * @return the store holding the copied hierarchy
+     */
+    public static OffHeapMapDataStore copyOf(MapDataStore source) {
+        if (source == null) {
+            throw new IllegalArgumentException("source should not be null");
+        }
+        int count = source.getNodeCount();
+        long nameBytes = 0;
+        for (int node = 0; node < count; node++) {
+            nameBytes += encode(source.getName(node)).length;
+        }
+        OffHeapMapDataStore store = allocate(count, checkedSize(nameBytes));
+        for (int node = 0; node < count; node++) {
+            store.parents.put(node, source.getParent(node));
+            store.childOffsets.put(node, source.getFirstChild(node));
+            store.values.put(node, source.getValue(node));
+            store.appendName(node, source.getName(node));
+        }
+        store.childOffsets.put(count, count);
+        return store;
+    }
+
+    private static OffHeapMapDataStore allocate(int count, int nameBytes) {
+        return new OffHeapMapDataStore(count,
+                allocateDirect(4L * count).asIntBuffer(),
+                allocateDirect(4L * (count + 1)).asIntBuffer(),
+                allocateDirect(8L * count).asDoubleBuffer(),
+                allocateDirect(4L * count).asIntBuffer(),
+                allocateDirect(4L * count).asIntBuffer(),
+                allocateDirect(nameBytes),
+                0);
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public int getParent(int node) {
+        return parents.get(node);
+    }
+
+    @Override
+    public int getFirstChild(int node) {
+        return childOffsets.get(node);
+    }
+
+    @Override
+    public int getChildCount(int node) {
+        return childOffsets.get(node + 1) - childOffsets.get(node);
+    }
+
+    @Override
+    public double getValue(int node) {
+        return values.get(node);
+    }
+
+    @Override
+    public String getName(int node) {
+        byte[] bytes = new byte[nameLengths.get(node)];
+        names.get(nameStarts.get(node), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void storeValue(int node, double value) {
+        values.put(node, value);
+    }
+
+    @Override
+    protected void storeName(int node, String name) {
+        // names are appended, the previous bytes are not reclaimed
+        appendName(node, name);
+    }
+
+    @Override
+    protected void sumValues() {
+        for (int node = 0; node < nodeCount; node++) {
+            if (childOffsets.get(node + 1) > childOffsets.get(node)) {
+                values.put(node, 0);
+            }
+        }
+        for (int node = nodeCount - 1; node > 0; node--) {
+            int parent = parents.get(node);
+            values.put(parent, values.get(parent) + values.get(node));
+        }
+    }
+
+    private void appendName(int node, String name) {
+        byte[] bytes = encode(name);
+        if (names.capacity() - namesSize < bytes.length) {
+            long capacity = Math.max((long) namesSize + bytes.length, names.capacity() + (names.capacity() >> 1));
+            ByteBuffer grown = allocateDirect(Math.min(capacity, Integer.MAX_VALUE));
+            grown.put(0, names, 0, namesSize);
+            names = grown;
+        }
+        names.put(namesSize, bytes);
+        nameStarts.put(node, namesSize);
+        nameLengths.put(node, bytes.length);
+        namesSize += bytes.length;
+    }
+
+    private static byte[] encode(String name) {
+        return name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int checkedSize(long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("names shall fit in 2GB, but take " + size + " bytes");
+        }
+        return (int) size;
+    }
+
+    private static ByteBuffer allocateDirect(long size) {
+        return ByteBuffer.allocateDirect(checkedSize(size)).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * MapData which current state is held by an immutable MapDataSnapshot.
+ * <p>
+ * Each change replaces the snapshot with a copy sharing everything but the
+ * path to the change, swapped in with a compare-and-set. Taking a snapshot
+ * is thus O(1) and never blocks the writers, while the layouts read a tree
+ * which values consistently add up.
+ * <p>
+ * Children can be added but not removed, so that each PersistentMapData
+ * keeps designating the same node. Listeners are notified on the thread that
+ * made the change.
+ *
+ * @author ahamon
+ */
+public final class PersistentMapData implements MapData {
+
+    private static final Logger LOG = Logger.getGlobal();
+    private static final int[] ROOT_PATH = new int[0];
+
+    private final Tree tree;
+    private final int[] path;
+
+    private PersistentMapData(Tree dataTree, int[] dataPath) {
+        tree = dataTree;
+        path = dataPath;
+    }
+
+    /**
+     * Creates a PersistentMapData holding a copy of the given data hierarchy.
+     *
+     * @param data the root of the hierarchy to be copied
+     * @return the root of the persistent hierarchy
+     */
+    public static PersistentMapData copyOf(MapData data) {
+        return new PersistentMapData(new Tree(MapDataSnapshot.copyOf(data)), ROOT_PATH);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The snapshot of the root is taken in O(1), the one of a descendant in
+     * the depth of the descendant.
+     */
+    @Override
+    public MapDataSnapshot snapshot() {
+        return tree.root.get().get(path);
+    }
+
+    @Override
+    public DataType getType() {
+        return snapshot().getType();
+    }
+
+    @Override
+    public double getValue() {
+        return snapshot().getValue();
+    }
+
+    @Override
+    public void setValue(double newValue) {
+        if (newValue < 0.0) {
+            LOG.log(Level.WARNING, "Ignoring set of a negative value ({0} for {1}", new Object[]{newValue, getName()});
+            return;
+        }
+        update(node -> {
+            if (node.hasChildrenData() && node.getValue() < TreeMapUtils.EPSILON && newValue >= TreeMapUtils.EPSILON) {
+                LOG.log(Level.WARNING, "Ignoring set of the value of {0}: its children have no value to scale", node.getName());
+                return node;
+            }
+            return node.withValue(newValue);
+        });
+    }
+
+    @Override
+    public long getVersion() {
+        return snapshot().getVersion();
+    }
+
+    @Override
+    public long getStructureVersion() {
+        return snapshot().getStructureVersion();
+    }
+
+    @Override
+    public String getName() {
+        return snapshot().getName();
+    }
+
+    @Override
+    public void setName(String newName) {
+        update(node -> node.withName(newName));
+    }
+
+    @Override
+    public boolean hasChildrenData() {
+        return snapshot().hasChildrenData();
+    }
+
+    @Override
+    public List<MapData> getChildrenData() {
+        return new ChildrenData(snapshot().getChildrenData().size());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The added data is copied, its later changes are not reflected.
+     */
+    @Override
+    public void addChildrenData(MapData data) {
+        if (data != null && getType() == DataType.NODE) {
+            MapDataSnapshot child = MapDataSnapshot.copyOf(data);
+            update(node -> node.withChild(child));
+        }
+    }
+
+    @Override
+    public void removeChildrenData(MapData data) {
+        LOG.log(Level.WARNING, "Removing children in a PersistentMapData is not allowed ({0})", getName());
+    }
+
+    @Override
+    public void addValueListener(ValueListener listener) {
+        tree.valueListeners.compute(this, (data, listeners) -> ValueListeners.add(listeners, listener));
+    }
+
+    @Override
+    public void removeValueListener(ValueListener listener) {
+        tree.valueListeners.computeIfPresent(this, (data, listeners) -> ValueListeners.remove(listeners, listener));
+    }
+
+    @Override
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        tree.propertyListeners.computeIfAbsent(this, PropertyChangeSupport::new).addPropertyChangeListener(listener);
+    }
+
+    @Override
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        PropertyChangeSupport support = tree.propertyListeners.get(this);
+        if (support != null) {
+            support.removePropertyChangeListener(listener);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PersistentMapData)) {
+            return false;
+        }
+        PersistentMapData other = (PersistentMapData) obj;
+        return tree == other.tree && Arrays.equals(path, other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(tree) + Arrays.hashCode(path);
+    }
+
+    private void update(UnaryOperator<MapDataSnapshot> change) {
+        MapDataSnapshot oldRoot;
+        MapDataSnapshot newRoot;
+        do {
+            oldRoot = tree.root.get();
+            newRoot = oldRoot.with(path, 0, change);
+        } while (!tree.root.compareAndSet(oldRoot, newRoot));
+        if (newRoot != oldRoot) {
+            tree.fireValueChanges(oldRoot, newRoot);
+        }
+    }
+
+    private static final class Tree {
+
+        private final AtomicReference<MapDataSnapshot> root;
+        private final Map<PersistentMapData, ValueListener[]> valueListeners = new ConcurrentHashMap<>();
+        private final Map<PersistentMapData, PropertyChangeSupport> propertyListeners = new ConcurrentHashMap<>();
+
+        private Tree(MapDataSnapshot rootSnapshot) {
+            root = new AtomicReference<>(rootSnapshot);
+        }
+
+        private void fireValueChanges(MapDataSnapshot oldRoot, MapDataSnapshot newRoot) {
+            // few data are listened to, comparing each of them is cheaper
+            // than finding the changed ones
+            valueListeners.forEach((data, listeners) -> {
+                MapDataSnapshot oldNode = oldRoot.get(data.path);
+                if (oldNode != null) {
+                    ValueListeners.fire(listeners, data, oldNode.getValue(), newRoot.get(data.path).getValue());
+                }
+            });
+            propertyListeners.forEach((data, support) -> {
+                MapDataSnapshot oldNode = oldRoot.get(data.path);
+                if (oldNode != null) {
+                    support.firePropertyChange(TreeMapUtils.MAP_DATA_VALUE_CHANGED, oldNode.getValue(), newRoot.get(data.path).getValue());
+                }
+            });
+        }
+    }
+
+    private final class ChildrenData extends AbstractList<MapData> implements RandomAccess {
+
+        private final int size;
+
+        private ChildrenData(int childrenCount) {
+            size = childrenCount;
+        }
+
+        @Override
+        public MapData get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int[] childPath = Arrays.copyOf(path, path.length + 1);
+            childPath[path.length] = index;
+            return new PersistentMapData(tree, childPath);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
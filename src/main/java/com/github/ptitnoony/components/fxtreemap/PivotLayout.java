@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+/**
+ * Implements the Pivot-by-middle layout by Ben Shneiderman and Martin
+ * Wattenberg: items are laid out in their original order around a pivot item
+ * chosen in the middle of the range.
+ *
+ * Ordered Treemap Layouts http://hcil.cs.umd.edu/trs/2001-06/2001-06.pdf
+ *
+ * Items before the pivot fill a first rectangle; the pivot and the items
+ * right after it are stacked next to it, their number being chosen to make the
+ * pivot as square as possible; the remaining items fill the last rectangle.
+ * The three ranges are then laid out the same way. Choosing the middle item
+ * as pivot halves the ranges at each step, which bounds the layout to
+ * O(n log n) and the pending ranges, kept on an explicit stack, to O(log n).
+ *
+ * @author ahamon
+ */
+public class PivotLayout implements LayoutAlgorithm {
+
+    // at most 2 pending ranges per halving level, plus the 3 last pushed ones
+    private static final int STACK_SIZE = 2 * Integer.SIZE + 3;
+
+    @Override
+    public void layout(LayoutResult result, double x, double y, double w, double h) {
+        result.resetOrder();
+        int count = result.size();
+        if (count == 0) {
+            return;
+        }
+        double[] sums = result.computePrefixSums();
+        int[] ranges = new int[2 * STACK_SIZE];
+        double[] bounds = new double[4 * STACK_SIZE];
+        int top = push(ranges, bounds, 0, 0, count - 1, x, y, w, h);
+        while (top > 0) {
+            top--;
+            int low = ranges[2 * top];
+            int high = ranges[2 * top + 1];
+            double rx = bounds[4 * top];
+            double ry = bounds[4 * top + 1];
+            double rw = bounds[4 * top + 2];
+            double rh = bounds[4 * top + 3];
+            if (low == high) {
+                result.setBounds(low, rx, ry, rw, rh);
+                continue;
+            }
+            int pivot = (low + high) / 2;
+            double pivotSize = result.getSize(pivot);
+            double total = sums[high + 1] - sums[low];
+            double firstRatio = (sums[pivot] - sums[low]) / total;
+            boolean isHorizontal = rw >= rh;
+            // bounds of the items before the pivot, and of the remaining ones
+            double restX = isHorizontal ? rx + rw * firstRatio : rx;
+            double restY = isHorizontal ? ry : ry + rh * firstRatio;
+            double restW = isHorizontal ? rw - rw * firstRatio : rw;
+            double restH = isHorizontal ? rh : rh - rh * firstRatio;
+            double restTotal = total - (sums[pivot] - sums[low]);
+            if (pivot > low) {
+                top = push(ranges, bounds, top, low, pivot - 1, rx, ry, isHorizontal ? rw * firstRatio : rw, isHorizontal ? rh : rh * firstRatio);
+            }
+            // number of items stacked with the pivot giving the squarest pivot
+            int stackEnd = pivot;
+            double bestAspect = Double.POSITIVE_INFINITY;
+            for (int k = pivot; k <= high; k++) {
+                double stackRatio = (sums[k + 1] - sums[pivot]) / restTotal;
+                double stackThickness = (isHorizontal ? restW : restH) * stackRatio;
+                double pivotLength = (isHorizontal ? restH : restW) * pivotSize / (sums[k + 1] - sums[pivot]);
+                double aspect = Math.max(stackThickness / pivotLength, pivotLength / stackThickness);
+                if (aspect < bestAspect) {
+                    bestAspect = aspect;
+                    stackEnd = k;
+                }
+            }
+            double stackSum = sums[stackEnd + 1] - sums[pivot];
+            double stackRatio = stackSum / restTotal;
+            if (isHorizontal) {
+                double stackW = restW * stackRatio;
+                double pivotH = restH * pivotSize / stackSum;
+                result.setBounds(pivot, restX, restY, stackW, pivotH);
+                if (stackEnd > pivot) {
+                    top = push(ranges, bounds, top, pivot + 1, stackEnd, restX, restY + pivotH, stackW, restH - pivotH);
+                }
+                if (stackEnd < high) {
+                    top = push(ranges, bounds, top, stackEnd + 1, high, restX + stackW, restY, restW - stackW, restH);
+                }
+            } else {
+                double stackH = restH * stackRatio;
+                double pivotW = restW * pivotSize / stackSum;
+                result.setBounds(pivot, restX, restY, pivotW, stackH);
+                if (stackEnd > pivot) {
+                    top = push(ranges, bounds, top, pivot + 1, stackEnd, restX + pivotW, restY, restW - pivotW, stackH);
+                }
+                if (stackEnd < high) {
+                    top = push(ranges, bounds, top, stackEnd + 1, high, restX, restY + stackH, restW, restH - stackH);
+                }
+            }
+        }
+    }
+
+    private static int push(int[] ranges, double[] bounds, int top, int low, int high, double x, double y, double w, double h) {
+        ranges[2 * top] = low;
+        ranges[2 * top + 1] = high;
+        bounds[4 * top] = x;
+        bounds[4 * top + 1] = y;
+        bounds[4 * top + 2] = w;
+        bounds[4 * top + 3] = h;
+        return top + 1;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+/**
+ * Implements the Slice-and-dice layout by Ben Shneiderman: items are laid out
+ * in their original order, side by side along the longest side of the bounds.
+ *
+ * The layout runs in linear time and does not sort the items, which makes it
+ * the cheapest algorithm for very large or rapidly updating levels, at the
+ * cost of thin items with high aspect ratios.
+ *
+ * @author ahamon
+ */
+public class SliceAndDiceLayout implements LayoutAlgorithm {
+
+    @Override
+    public void layout(LayoutResult result, double x, double y, double w, double h) {
+        result.resetOrder();
+        int count = result.size();
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            total += result.getSize(i);
+        }
+        boolean isHorizontal = w > h;
+        double offset = 0;
+        for (int i = 0; i < count; i++) {
+            double ratio = result.getSize(i) / total;
+            if (isHorizontal) {
+                result.setBounds(i, x + w * offset, y, w * ratio, h);
+            } else {
+                result.setBounds(i, x, y + h * offset, w, h * ratio);
+            }
+            offset += ratio;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+/**
+ * Implements the Squarified Treemap layout published by Mark Bruls, Kees
+ * Huizing, and Jarke J. van Wijk
+ *
+ * Squarified Treemaps https://www.win.tue.nl/~vanwijk/stm.pdf
+ *
+ * Items are sorted by descending size and laid out in rows along the shortest
+ * side of the remaining bounds, a row being extended as long as it lowers the
+ * worst aspect ratio of its items. This gives the most square items but does
+ * not keep the items order.
+ *
+ * @author ahamon
+ * @author tadas-subonis
+ */
+public class SquarifiedLayout implements LayoutAlgorithm {
+
+    @Override
+    public void layout(LayoutResult result, double x, double y, double w, double h) {
+        result.sortDescending();
+        layoutRanks(result, 0, result.size() - 1, x, y, w, h, null);
+    }
+
+    /**
+     * Lays out the given range of ranks row after row. Each committed row
+     * shrinks the remaining bounds, so the loop runs in constant stack space
+     * whatever the number of rows.
+     *
+     * @param rows where to record the committed rows, may be null
+     */
+    static void layoutRanks(LayoutResult result, int start, int end, double x, double y, double w, double h, IncrementalSquarifiedLayout.Rows rows) {
+        int rowStart = start;
+        while (rowStart <= end) {
+            if (rowStart == end) {
+                result.setBounds(result.getOrder(rowStart), x, y, w, h);
+                if (rows != null) {
+                    rows.add(end, x, y, w, h, Math.max(w / h, h / w));
+                }
+                return;
+            }
+            // the row is laid out along the shortest side of the bounds
+            double side = Math.min(w, h);
+            double sideSquare = side * side;
+            double rowSum = result.getSize(result.getOrder(rowStart));
+            double rowMin = rowSum;
+            double rowMax = rowSum;
+            double aspect = worstAspect(rowSum, rowMin, rowMax, sideSquare);
+            int mid = rowStart;
+            while (mid < end) {
+                double next = result.getSize(result.getOrder(mid + 1));
+                double nextSum = rowSum + next;
+                double nextMin = Math.min(rowMin, next);
+                double nextMax = Math.max(rowMax, next);
+                double nextAspect = worstAspect(nextSum, nextMin, nextMax, sideSquare);
+                if (aspect > nextAspect) {
+                    rowSum = nextSum;
+                    rowMin = nextMin;
+                    rowMax = nextMax;
+                    aspect = nextAspect;
+                    mid++;
+                } else {
+                    break;
+                }
+            }
+            if (rows != null) {
+                rows.add(mid, x, y, w, h, aspect);
+            }
+            double rowRatio = layoutRow(result, rowStart, mid, x, y, w, h);
+            if (w > h) {
+                double rowWidth = w * rowRatio;
+                x += rowWidth;
+                w -= rowWidth;
+            } else {
+                double rowHeight = h * rowRatio;
+                y += rowHeight;
+                h -= rowHeight;
+            }
+            rowStart = mid + 1;
+        }
+    }
+
+    /**
+     * Calculates the highest aspect ratio of a row from its running
+     * statistics, as described in the Squarified Treemaps paper: for a row of
+     * total size s laid along a side of length l, the worst ratio is
+     * max(l²·max / s², s² / (l²·min)).
+     *
+     * @param rowSum the sum of the row item sizes
+     * @param rowMin the smallest item size in the row
+     * @param rowMax the largest item size in the row
+     * @param sideSquare the square of the length of the side the row is laid
+     * along
+     * @return the highest aspect ratio of the row items
+     */
+    static double worstAspect(double rowSum, double rowMin, double rowMax, double sideSquare) {
+        double sumSquare = rowSum * rowSum;
+        return Math.max(sideSquare * rowMax / sumSquare, sumSquare / (sideSquare * rowMin));
+    }
+
+    /**
+     * Lays out the given items in a single row along the shortest side of the
+     * bounds.
+     *
+     * @return the fraction of the bounds used by the row
+     */
+    static double layoutRow(LayoutResult result, int start, int end, double x, double y, double w, double h) {
+        boolean isHorizontal = w > h;
+        double total = w * h;
+        double rowSize = totalSize(result, start, end);
+        double rowRatio = rowSize / total;
+        double offset = 0;
+
+        for (int rank = start; rank <= end; rank++) {
+            int i = result.getOrder(rank);
+            double ratio = result.getSize(i) / rowSize;
+
+            if (isHorizontal) {
+                result.setBounds(i, x, y + h * offset, w * rowRatio, h * ratio);
+            } else {
+                result.setBounds(i, x + w * offset, y, w * ratio, h * rowRatio);
+            }
+            offset += ratio;
+        }
+        return rowRatio;
+    }
+
+    private static double totalSize(LayoutResult result, int start, int end) {
+        double sum = 0;
+        for (int rank = start; rank <= end; rank++) {
+            sum += result.getSize(result.getOrder(rank));
+        }
+        return sum;
+    }
+}
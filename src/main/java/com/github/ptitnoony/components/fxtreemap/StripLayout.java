@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+/**
+ * Implements the Strip layout by Benjamin B. Bederson, Ben Shneiderman and
+ * Martin Wattenberg: items are laid out in their original order, in strips
+ * running along the longest side of the bounds.
+ *
+ * Ordered and Quantum Treemaps http://www.cs.umd.edu/hcil/trs/2001-18/2001-18.pdf
+ *
+ * A strip is extended as long as it lowers the worst aspect ratio of its
+ * items, which is evaluated in constant time from the strip running sum,
+ * minimum and maximum. The layout does not sort the items and runs in linear
+ * time.
+ *
+ * @author ahamon
+ */
+public class StripLayout implements LayoutAlgorithm {
+
+    @Override
+    public void layout(LayoutResult result, double x, double y, double w, double h) {
+        result.resetOrder();
+        int count = result.size();
+        boolean isHorizontal = w >= h;
+        double length = isHorizontal ? w : h;
+        double lengthSquare = length * length;
+        double offset = 0;
+        int stripStart = 0;
+        while (stripStart < count) {
+            double stripSum = result.getSize(stripStart);
+            double stripMin = stripSum;
+            double stripMax = stripSum;
+            double aspect = SquarifiedLayout.worstAspect(stripSum, stripMin, stripMax, lengthSquare);
+            int stripEnd = stripStart;
+            while (stripEnd < count - 1) {
+                double next = result.getSize(stripEnd + 1);
+                double nextSum = stripSum + next;
+                double nextMin = Math.min(stripMin, next);
+                double nextMax = Math.max(stripMax, next);
+                double nextAspect = SquarifiedLayout.worstAspect(nextSum, nextMin, nextMax, lengthSquare);
+                if (aspect > nextAspect) {
+                    stripSum = nextSum;
+                    stripMin = nextMin;
+                    stripMax = nextMax;
+                    aspect = nextAspect;
+                    stripEnd++;
+                } else {
+                    break;
+                }
+            }
+            double thickness = stripSum / length;
+            double position = 0;
+            for (int i = stripStart; i <= stripEnd; i++) {
+                double itemLength = result.getSize(i) / stripSum * length;
+                if (isHorizontal) {
+                    result.setBounds(i, x + position, y + offset, itemLength, thickness);
+                } else {
+                    result.setBounds(i, x + offset, y + position, thickness, itemLength);
+                }
+                position += itemLength;
+            }
+            offset += thickness;
+            stripStart = stripEnd + 1;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+/**
+ * Level of detail decorator of a LayoutAlgorithm laying out at most the K
+ * largest items, the other items being grouped into a single aggregate tile.
+ * K + 1 is the number of tiles of the minimum area fitting in the bounds.
+ *
+ * The K largest items are selected with a bounded heap in O(n log K), and the
+ * remaining sizes are summed in a single pass, so that the decorated
+ * algorithm only sorts and lays out K + 1 tiles, whatever the number of items.
+ * When several items are as large as the K-th largest one, the first ones in
+ * index order are laid out and the others aggregated.
+ *
+ * Unlike an AggregatingLayout, the number of tiles does not depend on the
+ * sizes being expressed in pixels. Like the decorated algorithm, a TopKLayout
+ * holds no state and can be shared.
+ *
+ * @author ahamon
+ */
+public class TopKLayout implements LayoutAlgorithm {
+
+    private final LayoutAlgorithm delegate;
+    private final double minTileArea;
+
+    /**
+     * Creates a TopKLayout.
+     *
+     * @param algorithm the algorithm laying out the selected items and the
+     * aggregate tile
+     * @param tileArea the minimum pixel area of a tile, from which the number
+     * of laid out items is derived
+     */
+    public TopKLayout(LayoutAlgorithm algorithm, double tileArea) {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("algorithm should not be null");
+        }
+        if (!(tileArea > 0)) {
+            throw new IllegalArgumentException("tileArea shall be strictly positive, but was " + tileArea);
+        }
+        delegate = algorithm;
+        minTileArea = tileArea;
+    }
+
+    /**
+     * Get the algorithm laying out the selected items and the aggregate tile.
+     *
+     * @return the decorated algorithm
+     */
+    public LayoutAlgorithm getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Get the minimum pixel area of a tile.
+     *
+     * @return the minimum tile area
+     */
+    public double getMinTileArea() {
+        return minTileArea;
+    }
+
+    /**
+     * Get the number of items laid out in bounds of the given size, one tile
+     * being kept for the aggregated items.
+     *
+     * @param w width of the bounds
+     * @param h height of the bounds
+     * @return the maximum number of items laid out, at least 1
+     */
+    public int getMaxItemCount(double w, double h) {
+        double itemCount = Math.floor(w * h / minTileArea) - 1;
+        if (!(itemCount >= 1)) {
+            return 1;
+        }
+        return itemCount >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) itemCount;
+    }
+
+    @Override
+    public void layout(LayoutResult result, double x, double y, double w, double h) {
+        int k = getMaxItemCount(w, h);
+        if (result.size() <= k + 1) {
+            delegate.layout(result, x, y, w, h);
+            return;
+        }
+        double threshold = selectKthLargest(result, k, result.getVisible().heap(k));
+        AggregatingLayout.aggregate(result, delegate, threshold, k, x, y, w, h);
+    }
+
+    /**
+     * Finds the k-th largest size of the given result, keeping the k largest
+     * sizes seen so far in a min-heap which root is the smallest of them.
+     *
+     * @param result the result holding more than k sizes
+     * @param k the rank of the size to find, starting at 1
+     * @param heap the heap buffer, of at least k entries
+     * @return the k-th largest size
+     */
+    private static double selectKthLargest(LayoutResult result, int k, double[] heap) {
+        for (int i = 0; i < k; i++) {
+            heap[i] = result.getSize(i);
+        }
+        for (int node = k / 2 - 1; node >= 0; node--) {
+            siftDown(heap, node, k);
+        }
+        for (int i = k; i < result.size(); i++) {
+            double size = result.getSize(i);
+            if (size > heap[0]) {
+                heap[0] = size;
+                siftDown(heap, 0, k);
+            }
+        }
+        return heap[0];
+    }
+
+    private static void siftDown(double[] heap, int node, int length) {
+        double value = heap[node];
+        int parent = node;
+        int child = 2 * parent + 1;
+        while (child < length) {
+            if (child + 1 < length && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= value) {
+                break;
+            }
+            heap[parent] = heap[child];
+            parent = child;
+            child = 2 * parent + 1;
+        }
+        heap[parent] = value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TopKLayout)) {
+            return false;
+        }
+        TopKLayout other = (TopKLayout) obj;
+        return delegate.equals(other.delegate) && Double.compare(minTileArea, other.minTileArea) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * delegate.hashCode() + Double.hashCode(minTileArea);
+    }
+}
@@ -23,16 +23,14 @@
  */
 package com.github.ptitnoony.components.fxtreemap;
 
-import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeListener;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import static javafx.application.Platform.runLater;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.Node;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.paint.Color;
-import javax.swing.Timer;
 
 /**
  *
@@ -43,9 +41,13 @@ public abstract class TreeMap implements PropertyChangeListener {
     private static final Logger LOG = Logger.getGlobal();
 
     private final AnchorPane mainNode;
-    private final Timer timer;
-
-    private boolean withDelay;
+    private final LayoutScheduler layoutScheduler;
+    private LayoutAlgorithm layoutAlgorithm = new SquarifiedLayout();
+    private double minItemArea = TreeMapUtils.DEFAULT_MIN_ITEM_AREA;
+    private boolean aggregateExpanded = false;
+    private TreeMapLayout treeMapLayout = new TreeMapLayout(layoutAlgorithm);
+    private final LayoutCache layoutCache = new LayoutCache();
+    private BackgroundLayout backgroundLayout = null;
 
     private double width = TreeMapUtils.DEFAULT_WIDTH;
     private double height = TreeMapUtils.DEFAULT_HEIGHT;
@@ -58,7 +60,8 @@ public abstract class TreeMap implements PropertyChangeListener {
      */
     public TreeMap(boolean withLayoutDelay) {
         mainNode = new AnchorPane();
-        withDelay = withLayoutDelay;
+        layoutScheduler = new LayoutScheduler(this::applyLayout,
+                withLayoutDelay ? TreeMapUtils.DEFAULT_TIMER_DELAY : 0, TreeMapUtils.DEFAULT_MAX_LAYOUT_LATENCY);
         //
         mainNode.widthProperty().addListener((ObservableValue<? extends Number> observable, Number oldValue, Number newValue) -> {
             LOG.log(Level.FINEST, "{0} changed from {1} to {2}", new Object[]{observable, oldValue, newValue});
@@ -70,11 +73,6 @@ public abstract class TreeMap implements PropertyChangeListener {
             height = newValue.doubleValue();
             requestLayoutUpdate();
         });
-        timer = new Timer(TreeMapUtils.DEFAULT_TIMER_DELAY, (ActionEvent e) -> {
-            LOG.log(Level.INFO, "Restart layout update timer on event {0}", e);
-            runLater(this::applyLayout);
-        });
-        timer.setRepeats(false);
     }
 
     /**
@@ -110,15 +108,130 @@ public abstract class TreeMap implements PropertyChangeListener {
     }
 
     /**
-     * Will trigger a layout update, which timing depends on the withDelay mode
-     * activation
+     * Changes the algorithm used to lay out the items and triggers a layout
+     * update.
+     *
+     * @param algorithm the layout algorithm, such as a SquarifiedLayout,
+     * SliceAndDiceLayout, StripLayout or PivotLayout
      */
-    public final void requestLayoutUpdate() {
-        if (withDelay) {
-            triggerTimer();
-        } else {
-            applyLayout();
+    public final void setLayoutAlgorithm(LayoutAlgorithm algorithm) {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("algorithm should not be null");
+        }
+        layoutAlgorithm = algorithm;
+        updateTreeMapLayout();
+    }
+
+    /**
+     *
+     * @return the algorithm used to lay out the items
+     */
+    public final LayoutAlgorithm getLayoutAlgorithm() {
+        return layoutAlgorithm;
+    }
+
+    /**
+     * Sets the pixel area below which items are grouped into a single
+     * aggregate tile, so that the cost of the layout and of the drawing
+     * depends on the number of items large enough to be seen.
+     *
+     * @param area the minimum item area in pixels, 0 to never aggregate items
+     */
+    public final void setMinItemArea(double area) {
+        if (!(area >= 0)) {
+            throw new IllegalArgumentException("area shall be positive, but was " + area);
+        }
+        minItemArea = area;
+        updateTreeMapLayout();
+    }
+
+    /**
+     *
+     * @return the pixel area below which items are aggregated
+     */
+    public final double getMinItemArea() {
+        return minItemArea;
+    }
+
+    /**
+     * Expands or collapses the aggregate tile. While expanded, all the items
+     * are laid out whatever their area.
+     *
+     * @param expanded if the aggregated items are to be laid out
+     */
+    public final void setAggregateExpanded(boolean expanded) {
+        aggregateExpanded = expanded;
+        updateTreeMapLayout();
+    }
+
+    /**
+     *
+     * @return if the aggregated items are laid out
+     */
+    public final boolean isAggregateExpanded() {
+        return aggregateExpanded;
+    }
+
+    /**
+     * Get the cache of the layouts computed by the TreeMap, which exposes the
+     * cache hit, miss and eviction counts.
+     *
+     * @return the layout cache
+     */
+    public final LayoutCache getLayoutCache() {
+        return layoutCache;
+    }
+
+    /**
+     * Sets the executor on which layouts are computed, off the JavaFX
+     * application thread. The computed bounds are applied on the application
+     * thread once ready, and layouts made stale by a newer resize or data
+     * change are discarded.
+     *
+     * @param executor the executor running the layouts, or null to compute the
+     * layouts on the JavaFX application thread
+     */
+    public final void setLayoutExecutor(ExecutorService executor) {
+        if (backgroundLayout != null) {
+            backgroundLayout.cancel();
         }
+        backgroundLayout = executor == null ? null : new BackgroundLayout(executor);
+        requestLayoutUpdate();
+    }
+
+    /**
+     *
+     * @return if the layouts are computed off the JavaFX application thread
+     */
+    public final boolean isBackgroundLayout() {
+        return backgroundLayout != null;
+    }
+
+    /**
+     * Set the maximum time a layout update may be delayed while the component
+     * keeps being resized or its data keeps changing.
+     *
+     * @param maxLatencyMillis the maximum latency in milliseconds
+     */
+    public final void setMaxLayoutLatency(long maxLatencyMillis) {
+        layoutScheduler.setMaxLatency(maxLatencyMillis);
+    }
+
+    /**
+     *
+     * @return the maximum layout update latency in milliseconds
+     */
+    public final long getMaxLayoutLatency() {
+        return layoutScheduler.getMaxLatency();
+    }
+
+    /**
+     * Will trigger a layout update on a next JavaFX pulse, which timing depends
+     * on the withDelay mode activation. Successive requests are coalesced into
+     * at most one layout per pulse. Can be called from any thread.
+     */
+    public final void requestLayoutUpdate() {
+        layoutScheduler.request();
     }
 
     /**
@@ -130,6 +243,31 @@ public abstract class TreeMap implements PropertyChangeListener {
         return mainNode;
     }
 
+    /**
+     * Get the layout to be used when applying the layout.
+     *
+     * @return the TreeMap layout, using the current layout algorithm
+     */
+    protected final TreeMapLayout getTreeMapLayout() {
+        return treeMapLayout;
+    }
+
+    /**
+     * Get the background layout to be used when applying the layout.
+     *
+     * @return the background layout, or null if layouts are to be computed on
+     * the JavaFX application thread
+     */
+    protected final BackgroundLayout getBackgroundLayout() {
+        return backgroundLayout;
+    }
+
+    private void updateTreeMapLayout() {
+        boolean aggregate = minItemArea > 0 && !aggregateExpanded;
+        treeMapLayout = new TreeMapLayout(aggregate ? new AggregatingLayout(layoutAlgorithm, minItemArea) : layoutAlgorithm);
+        requestLayoutUpdate();
+    }
+
     //
     // Abstract methods
     //
@@ -165,15 +303,4 @@ public abstract class TreeMap implements PropertyChangeListener {
     public abstract double getPadding();
 
     protected abstract void applyLayout();
-
-    //
-    // Private methods
-    //
-    private void triggerTimer() {
-        if (timer.isRunning()) {
-            timer.restart();
-        } else {
-            timer.start();
-        }
-    }
 }
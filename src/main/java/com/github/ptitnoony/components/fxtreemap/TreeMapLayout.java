@@ -26,111 +26,266 @@ package com.github.ptitnoony.components.fxtreemap;
 import java.util.List;
 
 /**
- * Implements the Squarified Treemap layout published by Mark Bruls, Kees
- * Huizing, and Jarke J. van Wijk
+ * Lays out MapItems using a LayoutAlgorithm, the Squarified Treemap layout by
+ * default. The items sizes are snapshotted once, laid out by the algorithm and
+ * the final bounds written back to the items.
  *
- * Squarified Treemaps https://www.win.tue.nl/~vanwijk/stm.pdf
+ * The layout does not hold any state: a single instance can be shared between
+ * several TreeMap instances and used concurrently from several threads. The
+ * intermediate and final bounds are stored in a LayoutResult provided by the
+ * caller, which may be reused across layouts to avoid allocations.
  *
  * @author ahamon
  * @author tadas-subonis
  */
 public class TreeMapLayout {
 
-    // Do not make it a local variable, introduces a bug
-    private int mid = 0;
+    private final LayoutAlgorithm algorithm;
+
+    /**
+     * Creates a TreeMapLayout using the given algorithm.
+     *
+     * @param layoutAlgorithm the algorithm computing the items bounds
+     */
+    public TreeMapLayout(LayoutAlgorithm layoutAlgorithm) {
+        if (layoutAlgorithm == null) {
+            throw new IllegalArgumentException("layoutAlgorithm should not be null");
+        }
+        algorithm = layoutAlgorithm;
+    }
+
+    /**
+     * Creates a TreeMapLayout using the squarified layout.
+     */
+    public TreeMapLayout() {
+        this(new SquarifiedLayout());
+    }
+
+    /**
+     * Get the algorithm used to compute the items bounds.
+     *
+     * @return the layout algorithm
+     */
+    public LayoutAlgorithm getAlgorithm() {
+        return algorithm;
+    }
 
     public void layout(MapModel model, Rect bounds) {
         layout(model.getItems(), bounds);
     }
 
-    public void layout(List<? extends MapItem> items, Rect bounds) {
-        //
-        MapItem[] array = new MapItem[items.size()];
-        //ugly
-        for (int i = 0; i < items.size(); i++) {
-            array[i] = items.get(i);
+    /**
+     * Lays out the items of the given model, using the given result to store
+     * the computed bounds.
+     *
+     * @param model the model which items are to be laid out
+     * @param bounds the bounds to lay the items in
+     * @param result the result to be filled, may be reused across layouts
+     * @return the filled result
+     */
+    public LayoutResult layout(MapModel model, Rect bounds, LayoutResult result) {
+        return layout(model.getItems(), bounds, result);
+    }
+
+    /**
+     * Lays out the items of the given model, reusing the bounds found in the
+     * cache when the model data and the bounds size did not change since they
+     * were computed.
+     *
+     * @param model the model which items are to be laid out
+     * @param bounds the bounds to lay the items in
+     * @param result the result to be filled, may be reused across layouts
+     * @param cache the cache of the previous layouts
+     * @return the filled result
+     */
+    public LayoutResult layout(MapModel model, Rect bounds, LayoutResult result, LayoutCache cache) {
+        List<? extends MapItem> itemList = model.getItems();
+        MapItem[] items = itemList.toArray(new MapItem[itemList.size()]);
+        if (items.length == 0) {
+            result.clear();
+            return result;
+        }
+        MapData modelData = model.getData();
+        // read before the sizes, so a change while loading them is a later miss
+        long modelVersion = modelData.getVersion();
+        MapData data = loadSizes(modelData, items, bounds, result);
+        // snapshots do not change
+        long version = data == modelData ? modelVersion : data.getVersion();
+        if (cache.restore(data, version, bounds, algorithm, result)) {
+            result.applyTo(items, 0);
+            return result;
         }
-        //
-        layout(
-                sortDescending(array),
-                0,
-                items.size() - 1,
-                bounds);
+        layoutSizes(result, bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+        result.applyTo(items, 0);
+        cache.store(data, version, bounds, algorithm, result);
+        return result;
+    }
+
+    public void layout(List<? extends MapItem> items, Rect bounds) {
+        layout(items, bounds, new LayoutResult());
+    }
+
+    /**
+     * Lays out the given items, using the given result to store the computed
+     * bounds. The i-th item of the list is
+     * described by the i-th entry of the result.
+     *
+     * @param items the items to be laid out
+     * @param bounds the bounds to lay the items in
+     * @param result the result to be filled, may be reused across layouts
+     * @return the filled result
+     */
+    public LayoutResult layout(List<? extends MapItem> items, Rect bounds, LayoutResult result) {
+        return layout(items.toArray(new MapItem[items.size()]), bounds, result);
+    }
+
+    /**
+     * Lays out the given items, using the given result to store the computed
+     * bounds. The i-th item of the array
+     * is described by the i-th entry of the result.
+     *
+     * @param items the items to be laid out
+     * @param bounds the bounds to lay the items in
+     * @param result the result to be filled, may be reused across layouts
+     * @return the filled result
+     */
+    public LayoutResult layout(MapItem[] items, Rect bounds, LayoutResult result) {
+        result.load(items, 0, items.length - 1);
+        layoutSizes(result, bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+        result.applyTo(items, 0);
+        return result;
     }
 
     public MapItem[] sortDescending(MapItem[] items) {
         if (items == null || items.length == 0) {
             return new MapItem[0];
         }
+        LayoutResult sorted = new LayoutResult();
+        sorted.load(items, 0, items.length - 1);
+        sorted.sortDescending();
         MapItem[] inputArr = new MapItem[items.length];
-        System.arraycopy(items, 0, inputArr, 0, items.length);
-
-        TreeMapUtils.quickSortDesc(inputArr, 0, inputArr.length - 1);
-
+        for (int i = 0; i < items.length; i++) {
+            inputArr[i] = items[sorted.getOrder(i)];
+        }
         return inputArr;
     }
 
     public void layout(MapItem[] items, int start, int end, Rect bounds) {
-        if (start > end) {
-            return;
-        }
-        if (start == end) {
-            items[start].setBounds(bounds);
-        }
+        layout(items, start, end, bounds, new LayoutResult());
+    }
 
-        mid = start;
-        while (mid < end) {
-            if (highestAspect(items, start, mid, bounds) > highestAspect(items, start, mid + 1, bounds)) {
-                mid++;
-            } else {
-                Rect newBounds = layoutRow(items, start, mid, bounds);
-                layout(items, mid + 1, end, newBounds);
-            }
+    /**
+     * Lays out the given items in their current order, using the given result
+     * to store the computed bounds. The item at index start + i is described
+     * by the i-th entry of the result.
+     *
+     * @param items the items to be laid out
+     * @param start index of the first item
+     * @param end index of the last item (inclusive)
+     * @param bounds the bounds to lay the items in
+     * @param result the result to be filled, may be reused across layouts
+     * @return the filled result
+     */
+    public LayoutResult layout(MapItem[] items, int start, int end, Rect bounds, LayoutResult result) {
+        if (start > end) {
+            result.clear();
+            return result;
         }
+        result.load(items, start, end);
+        result.resetOrder();
+        layoutSizes(result, bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+        result.applyTo(items, start);
+        return result;
     }
 
+    /**
+     * Lays out the given items in a single row along the shortest side of the
+     * bounds, and get the highest aspect ratio of their bounds.
+     *
+     * @param items the items to be laid out
+     * @param start index of the first item
+     * @param end index of the last item (inclusive)
+     * @param bounds the bounds the row is laid out in
+     * @return the highest aspect ratio of the row items
+     * @deprecated rows are laid out by SquarifiedLayout, use
+     * {@link #layout(MapItem[], int, int, Rect, LayoutResult)}
+     */
+    @Deprecated
     public double highestAspect(MapItem[] items, int start, int end, Rect bounds) {
         layoutRow(items, start, end, bounds);
         double max = Double.MIN_VALUE;
         for (int i = start; i <= end; i++) {
-            if (items[i].getBounds().aspectRatio() > max) {
-                max = items[i].getBounds().aspectRatio();
-            }
+            max = Math.max(max, items[i].getBounds().aspectRatio());
         }
         return max;
     }
 
+    /**
+     * Lays out the given items in a single row along the shortest side of the
+     * bounds.
+     *
+     * @param items the items to be laid out
+     * @param start index of the first item
+     * @param end index of the last item (inclusive)
+     * @param bounds the bounds the row is laid out in
+     * @return the bounds remaining after the row
+     * @deprecated rows are laid out by SquarifiedLayout, use
+     * {@link #layout(MapItem[], int, int, Rect, LayoutResult)}
+     */
+    @Deprecated
     public Rect layoutRow(MapItem[] items, int start, int end, Rect bounds) {
-        boolean isHorizontal = bounds.getWidth() > bounds.getHeight();
-        double total = bounds.getWidth() * bounds.getHeight();
-        double rowSize = totalSize(items, start, end);
-        double rowRatio = rowSize / total;
-        double offset = 0;
+        LayoutResult result = new LayoutResult();
+        result.load(items, start, end);
+        result.resetOrder();
+        double x = bounds.getX();
+        double y = bounds.getY();
+        double w = bounds.getWidth();
+        double h = bounds.getHeight();
+        double rowRatio = SquarifiedLayout.layoutRow(result, 0, end - start, x, y, w, h);
+        result.applyTo(items, start);
+        if (w > h) {
+            return new Rect(x + w * rowRatio, y, w - w * rowRatio, h);
+        }
+        return new Rect(x, y + h * rowRatio, w, h - h * rowRatio);
+    }
 
-        for (int i = start; i <= end; i++) {
-            Rect r = new Rect();
-            double ratio = items[i].getSize() / rowSize;
-
-            if (isHorizontal) {
-                r.setRect(
-                        bounds.getX(),
-                        bounds.getY() + bounds.getHeight() * offset,
-                        bounds.getWidth() * rowRatio,
-                        bounds.getHeight() * ratio);
-            } else {
-                r.setRect(
-                        bounds.getX() + bounds.getWidth() * offset,
-                        bounds.getY(),
-                        bounds.getWidth() * ratio,
-                        bounds.getHeight() * rowRatio);
-            }
-            items[i].setBounds(r);
-            offset += ratio;
+    /**
+     * Snapshots the sizes of the given items into the result. When the data
+     * supports snapshots, the sizes are read from a snapshot of its children,
+     * so that they add up to the bounds area even while the data changes.
+     *
+     * @param data the data which children are the items
+     * @param items the items to be laid out
+     * @param bounds the bounds to lay the items in
+     * @param result the result to be filled
+     * @return the data the sizes were read from, which version they match
+     */
+    static MapData loadSizes(MapData data, MapItem[] items, Rect bounds, LayoutResult result) {
+        MapData snapshot = data.snapshot();
+        if (snapshot != data && snapshot.getChildrenData().size() == items.length) {
+            result.load(snapshot.getChildrenData(), bounds.getWidth() * bounds.getHeight());
+            return snapshot;
         }
-        if (isHorizontal) {
-            return new Rect(bounds.getX() + bounds.getWidth() * rowRatio, bounds.getY(), bounds.getWidth() - bounds.getWidth() * rowRatio, bounds.getHeight());
+        result.load(items, 0, items.length - 1);
+        return data;
+    }
+
+    /**
+     * Lays out the sizes already loaded in the given result. The empty items
+     * are partitioned out so that the algorithm does not sort nor lay them
+     * out.
+     *
+     * @param result the result holding the sizes to lay out
+     * @param x coordinates of the bounds along the X axis
+     * @param y coordinates of the bounds along the Y axis
+     * @param w width of the bounds
+     * @param h height of the bounds
+     */
+    void layoutSizes(LayoutResult result, double x, double y, double w, double h) {
+        if (result.getSkippedCount() == 0) {
+            algorithm.layout(result, x, y, w, h);
         } else {
-            return new Rect(bounds.getX(), bounds.getY() + bounds.getHeight() * rowRatio, bounds.getWidth(), bounds.getHeight() - bounds.getHeight() * rowRatio);
+            AggregatingLayout.aggregate(result, algorithm, 0, Integer.MAX_VALUE, x, y, w, h);
         }
     }
 
@@ -146,8 +301,4 @@ public class TreeMapLayout {
         return sum;
     }
 
-    protected int getMID() {
-        return mid;
-    }
-
 }
@@ -49,7 +49,8 @@ public class TreeMapStyle {
 
     public static final String STYLE_CHANGED = "treeStyleChanged";
 
-    private final PropertyChangeSupport propertyChangeSupport;
+    // allocated on the first registered listener
+    private PropertyChangeSupport propertyChangeSupport = null;
 
     private double padding;
     private double borderRadius;
@@ -62,8 +63,6 @@ public class TreeMapStyle {
     private Color fontColor;
 
     public TreeMapStyle() {
-        propertyChangeSupport = new PropertyChangeSupport(TreeMapStyle.this);
-        //
         padding = DEFAULT_PADDING;
         borderRadius = DEFAULT_BORDER_RADIUS;
         strokeWidth = DEFAULT_STROKE_WIDTH;
@@ -157,16 +156,23 @@ public class TreeMapStyle {
     }
 
     public void addPropertyChangeListener(PropertyChangeListener listener) {
+        if (propertyChangeSupport == null) {
+            propertyChangeSupport = new PropertyChangeSupport(TreeMapStyle.this);
+        }
         propertyChangeSupport.addPropertyChangeListener(listener);
     }
 
     public void removePropertyChangeListener(PropertyChangeListener listener) {
-        propertyChangeSupport.removePropertyChangeListener(listener);
+        if (propertyChangeSupport != null) {
+            propertyChangeSupport.removePropertyChangeListener(listener);
+        }
     }
 
     private void firePropertyChanged() {
         // basic fire at the moment
-        propertyChangeSupport.firePropertyChange(STYLE_CHANGED, null, null);
+        if (propertyChangeSupport != null) {
+            propertyChangeSupport.firePropertyChange(STYLE_CHANGED, null, null);
+        }
     }
 
 }
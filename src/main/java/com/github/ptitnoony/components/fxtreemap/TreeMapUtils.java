@@ -35,10 +35,34 @@ public class TreeMapUtils {
     private static final Logger LOG = Logger.getGlobal();
 
     /**
-     * Default timer value for delayed layout update in a TreeMap.
+     * Default time without resize or data change, in milliseconds, waited for
+     * before a delayed layout update in a TreeMap.
      */
     public static final int DEFAULT_TIMER_DELAY = 100;
 
+    /**
+     * Default maximum time, in milliseconds, a TreeMap layout update may be
+     * delayed by successive requests.
+     */
+    public static final long DEFAULT_MAX_LAYOUT_LATENCY = 250;
+
+    /**
+     * Default maximum number of layouts kept in a TreeMap layout cache.
+     */
+    public static final int DEFAULT_LAYOUT_CACHE_CAPACITY = 16;
+
+    /**
+     * Default tolerance of an IncrementalSquarifiedLayout: a kept row may have
+     * a worst aspect ratio up to 50% higher than when it was squarified.
+     */
+    public static final double DEFAULT_ASPECT_TOLERANCE = 0.5;
+
+    /**
+     * Default pixel area below which the items of a TreeMap are grouped into
+     * an aggregate tile: 0, items are never aggregated.
+     */
+    public static final double DEFAULT_MIN_ITEM_AREA = 0;
+
     /**
      * Default width of a TreeMap component.
      */
@@ -68,6 +92,18 @@ public class TreeMapUtils {
      */
     public static final String MAP_DATA_VALUE_FUNCTION_CHANGED = "mapDataValueFunctionChanged";
 
+    /**
+     * Size of the ranges below which the index sort falls back to an
+     * insertion sort.
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    /**
+     * Number of children value changes a ConcreteMapData applies as deltas
+     * before recalculating its exact value.
+     */
+    public static final int DELTA_UPDATES_BEFORE_RECALCULATE = 1024;
+
     /**
      * Arbitrary randomly small number.
      */
@@ -86,45 +122,211 @@ public class TreeMapUtils {
         // private utility constructor
     }
 
+    /**
+     * Sorts the given range of items by descending size. The sizes are read
+     * once into an array of keys, sorted with
+     * {@link #sortDescending(double[], int[], int, int)}, and the items are
+     * then moved to their rank. NaN sizes are sorted last.
+     *
+     * @param inputArr the items to be sorted
+     * @param lowerIndex index of the first item to sort
+     * @param higherIndex index of the last item to sort (inclusive)
+     * @return false if the range is empty or invalid, true otherwise
+     */
     public static boolean quickSortDesc(MapItem[] inputArr, int lowerIndex, int higherIndex) {
-
-        int i = lowerIndex;
-        int j = higherIndex;
         if (inputArr == null || lowerIndex >= higherIndex || lowerIndex < 0 || higherIndex > inputArr.length - 1) {
             return false;
         }
-        // calculate pivot number
-        double pivot = inputArr[lowerIndex + (higherIndex - lowerIndex) / 2].getSize();
-        // Divide into two arrays
-        while (i <= j) {
-            /**
-             * In each iteration, we will identify a number from left side which
-             * is greater then the pivot value, and also we will identify a
-             * number from right side which is less then the pivot value. Once
-             * the search is done, then we exchange both numbers.
-             */
-            while (inputArr[i].getSize() > pivot) {
-                i++;
+        int count = higherIndex - lowerIndex + 1;
+        double[] keys = new double[count];
+        int[] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            double size = inputArr[lowerIndex + i].getSize();
+            keys[i] = Double.isNaN(size) ? Double.NEGATIVE_INFINITY : size;
+            indices[i] = i;
+        }
+        sortDescending(keys, indices, 0, count - 1);
+        MapItem[] sorted = new MapItem[count];
+        for (int rank = 0; rank < count; rank++) {
+            sorted[rank] = inputArr[lowerIndex + indices[rank]];
+        }
+        System.arraycopy(sorted, 0, inputArr, lowerIndex, count);
+        return true;
+    }
+
+    /**
+     * Sorts a range of indices by descending value of their key. The keys are
+     * not moved, so that sizes can be snapshotted once and shared by the sort
+     * and the layout. The sort is an introsort: a median of three quick sort
+     * without recursion, falling back to a heap sort for partitions which
+     * split badly and to an insertion sort for small partitions. The keys
+     * shall not contain NaN.
+     *
+     * @param keys the keys, indexed by the values of indices
+     * @param indices the indices to be sorted
+     * @param lowerIndex position of the first index to sort
+     * @param higherIndex position of the last index to sort (inclusive)
+     * @return false if the range is empty or invalid, true otherwise
+     */
+    public static boolean sortDescending(double[] keys, int[] indices, int lowerIndex, int higherIndex) {
+        if (keys == null || indices == null || lowerIndex >= higherIndex || lowerIndex < 0 || higherIndex > indices.length - 1) {
+            return false;
+        }
+        // low, high and remaining depth for each of the at most 32 deferred partitions
+        int[] stack = new int[3 * Integer.SIZE];
+        int top = 0;
+        int low = lowerIndex;
+        int high = higherIndex;
+        int depth = 2 * (Integer.SIZE - Integer.numberOfLeadingZeros(higherIndex - lowerIndex + 1));
+        while (true) {
+            while (high - low >= INSERTION_SORT_THRESHOLD) {
+                if (depth == 0) {
+                    heapSortDescending(keys, indices, low, high);
+                    low = high;
+                    break;
+                }
+                depth--;
+                double pivot = medianOfThree(keys[indices[low]], keys[indices[low + (high - low) / 2]], keys[indices[high]]);
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (keys[indices[i]] > pivot) {
+                        i++;
+                    }
+                    while (keys[indices[j]] < pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        int temp = indices[i];
+                        indices[i] = indices[j];
+                        indices[j] = temp;
+                        i++;
+                        j--;
+                    }
+                }
+                // defer the larger partition and keep on with the smaller one
+                if (j - low > high - i) {
+                    stack[top++] = low;
+                    stack[top++] = j;
+                    low = i;
+                } else {
+                    stack[top++] = i;
+                    stack[top++] = high;
+                    high = j;
+                }
+                stack[top++] = depth;
             }
-            while (inputArr[j].getSize() < pivot) {
+            insertionSortDescending(keys, indices, low, high);
+            if (top == 0) {
+                return true;
+            }
+            depth = stack[--top];
+            high = stack[--top];
+            low = stack[--top];
+        }
+    }
+
+    /**
+     * Checks whether a range of indices is sorted by descending value of
+     * their key.
+     *
+     * @param keys the keys, indexed by the values of indices
+     * @param indices the indices to be checked
+     * @param lowerIndex position of the first index to check
+     * @param higherIndex position of the last index to check (inclusive)
+     * @return true if the range is sorted
+     */
+    public static boolean isSortedDescending(double[] keys, int[] indices, int lowerIndex, int higherIndex) {
+        for (int i = lowerIndex + 1; i <= higherIndex; i++) {
+            if (keys[indices[i - 1]] < keys[indices[i]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts a nearly sorted range of indices by descending value of their
+     * key, using an insertion sort which gives up once the given number of
+     * moves is exceeded. The range is always left as a permutation of its
+     * original indices, sorted or not.
+     *
+     * @param keys the keys, indexed by the values of indices
+     * @param indices the indices to be sorted
+     * @param lowerIndex position of the first index to sort
+     * @param higherIndex position of the last index to sort (inclusive)
+     * @param maxMoves the maximum number of index moves allowed
+     * @return true if the range could be sorted within the allowed moves
+     */
+    public static boolean repairDescending(double[] keys, int[] indices, int lowerIndex, int higherIndex, long maxMoves) {
+        long moves = 0;
+        for (int i = lowerIndex + 1; i <= higherIndex; i++) {
+            int index = indices[i];
+            double key = keys[index];
+            int j = i - 1;
+            while (j >= lowerIndex && keys[indices[j]] < key) {
+                indices[j + 1] = indices[j];
                 j--;
+                moves++;
+            }
+            indices[j + 1] = index;
+            if (moves > maxMoves) {
+                return false;
             }
-            if (i <= j) {
-                MapItem temp = inputArr[i];
-                inputArr[i] = inputArr[j];
-                inputArr[j] = temp;
-                //move index to next position on both sides
-                i++;
+        }
+        return true;
+    }
+
+    private static double medianOfThree(double a, double b, double c) {
+        if (a > b) {
+            return b > c ? b : Math.min(a, c);
+        }
+        return a > c ? a : Math.min(b, c);
+    }
+
+    private static void insertionSortDescending(double[] keys, int[] indices, int low, int high) {
+        for (int i = low + 1; i <= high; i++) {
+            int index = indices[i];
+            double key = keys[index];
+            int j = i - 1;
+            while (j >= low && keys[indices[j]] < key) {
+                indices[j + 1] = indices[j];
                 j--;
             }
+            indices[j + 1] = index;
+        }
+    }
+
+    private static void heapSortDescending(double[] keys, int[] indices, int low, int high) {
+        // a min-heap whose root is repeatedly moved to the end of the range
+        int length = high - low + 1;
+        for (int i = length / 2 - 1; i >= 0; i--) {
+            siftDown(keys, indices, low, i, length);
         }
-        // call quickSort() method recursively
-        if (lowerIndex < j) {
-            quickSortDesc(inputArr, lowerIndex, j);
+        for (int end = length - 1; end > 0; end--) {
+            int temp = indices[low];
+            indices[low] = indices[low + end];
+            indices[low + end] = temp;
+            siftDown(keys, indices, low, 0, end);
         }
-        if (i < higherIndex) {
-            quickSortDesc(inputArr, i, higherIndex);
+    }
+
+    private static void siftDown(double[] keys, int[] indices, int offset, int node, int length) {
+        int index = indices[offset + node];
+        double key = keys[index];
+        int parent = node;
+        int child = 2 * parent + 1;
+        while (child < length) {
+            if (child + 1 < length && keys[indices[offset + child + 1]] < keys[indices[offset + child]]) {
+                child++;
+            }
+            if (keys[indices[offset + child]] >= key) {
+                break;
+            }
+            indices[offset + parent] = indices[offset + child];
+            parent = child;
+            child = 2 * parent + 1;
         }
-        return true;
+        indices[offset + parent] = index;
     }
 }
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+
+/**
+ * Helpers managing the value listeners of a data as a compact copy-on-write
+ * array, which is null as long as no listener is registered. Listeners are
+ * rarely added or removed but often notified, which then only iterates over
+ * the array.
+ *
+ * @author ahamon
+ */
+final class ValueListeners {
+
+    private ValueListeners() {
+        // utility class
+    }
+
+    /**
+     * Adds a listener.
+     *
+     * @param listeners the current listeners, may be null
+     * @param listener the listener to add
+     * @return the new listeners
+     */
+    static ValueListener[] add(ValueListener[] listeners, ValueListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener should not be null");
+        }
+        if (listeners == null) {
+            return new ValueListener[]{listener};
+        }
+        ValueListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+        newListeners[listeners.length] = listener;
+        return newListeners;
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listeners the current listeners, may be null
+     * @param listener the listener to remove
+     * @return the new listeners, null if none is left
+     */
+    static ValueListener[] remove(ValueListener[] listeners, ValueListener listener) {
+        if (listeners == null) {
+            return null;
+        }
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                if (listeners.length == 1) {
+                    return null;
+                }
+                ValueListener[] newListeners = new ValueListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, newListeners, 0, i);
+                System.arraycopy(listeners, i + 1, newListeners, i, listeners.length - i - 1);
+                return newListeners;
+            }
+        }
+        return listeners;
+    }
+
+    /**
+     * Notifies the listeners of a value change, if the value did change.
+     *
+     * @param listeners the listeners, may be null
+     * @param source the data which value changed
+     * @param oldValue the previous value
+     * @param newValue the new value
+     */
+    static void fire(ValueListener[] listeners, MapData source, double oldValue, double newValue) {
+        if (listeners != null && Double.compare(oldValue, newValue) != 0) {
+            for (ValueListener listener : listeners) {
+                listener.valueChanged(source, oldValue, newValue);
+            }
+        }
+    }
+
+    /**
+     * Property change listener forwarding the value changes of a data to a
+     * value listener, for the MapData implementations which only notify
+     * property changes. Adapters of the same listener and data are equal, so
+     * that the listener can be removed.
+     */
+    static final class PropertyChangeAdapter implements PropertyChangeListener {
+
+        private final MapData source;
+        private final ValueListener listener;
+
+        PropertyChangeAdapter(MapData data, ValueListener valueListener) {
+            source = data;
+            listener = valueListener;
+        }
+
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            if (TreeMapUtils.MAP_DATA_VALUE_CHANGED.equals(evt.getPropertyName())) {
+                // an unknown old value is NaN, an unknown new value is read
+                double oldValue = evt.getOldValue() instanceof Number ? ((Number) evt.getOldValue()).doubleValue() : Double.NaN;
+                double newValue = evt.getNewValue() instanceof Number ? ((Number) evt.getNewValue()).doubleValue() : source.getValue();
+                listener.valueChanged(source, oldValue, newValue);
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PropertyChangeAdapter)) {
+                return false;
+            }
+            PropertyChangeAdapter other = (PropertyChangeAdapter) obj;
+            return source == other.source && listener.equals(other.listener);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(source) + listener.hashCode();
+        }
+    }
+}
@@ -23,10 +23,11 @@
  */
 package com.github.ptitnoony.components.fxtreemap.canvasimpl;
 
+import com.github.ptitnoony.components.fxtreemap.LayoutResult;
 import com.github.ptitnoony.components.fxtreemap.MapData;
 import com.github.ptitnoony.components.fxtreemap.MapModel;
 import java.beans.PropertyChangeEvent;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -37,11 +38,13 @@ public class CanvasMapModel implements MapModel {
 
     private final List<CanvasMapItem> mapItems;
     private final MapData modelData;
+    private final LayoutResult layoutResult;
     private double totalArea;
 
     public CanvasMapModel(MapData data, double width, double height) {
         modelData = data;
-        mapItems = new LinkedList<>();
+        layoutResult = new LayoutResult();
+        mapItems = new ArrayList<>(data.getChildrenData().size());
         totalArea = width * height;
         modelData.getChildrenData().forEach(d -> {
             CanvasMapItem mapItem = new CanvasMapItem(CanvasMapModel.this, d);
@@ -76,6 +79,15 @@ public class CanvasMapModel implements MapModel {
         return totalArea;
     }
 
+    /**
+     * Get the buffer in which the model items are laid out.
+     *
+     * @return the model layout result
+     */
+    public LayoutResult getLayoutResult() {
+        return layoutResult;
+    }
+
     protected List<CanvasMapItem> getCanvasItems() {
         return mapItems;
     }
@@ -23,13 +23,16 @@
  */
 package com.github.ptitnoony.components.fxtreemap.canvasimpl;
 
+import com.github.ptitnoony.components.fxtreemap.LayoutNode;
+import com.github.ptitnoony.components.fxtreemap.LayoutResult;
 import com.github.ptitnoony.components.fxtreemap.MapData;
+import com.github.ptitnoony.components.fxtreemap.NestedTreeMapLayout;
 import com.github.ptitnoony.components.fxtreemap.Rect;
 import com.github.ptitnoony.components.fxtreemap.TreeMap;
-import com.github.ptitnoony.components.fxtreemap.TreeMapLayout;
 import com.github.ptitnoony.components.fxtreemap.TreeMapStyle;
-import com.github.ptitnoony.components.fxtreemap.TreeMapUtils;
 import java.beans.PropertyChangeEvent;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.scene.canvas.Canvas;
@@ -47,7 +50,7 @@ public class CanvasTreeMap extends TreeMap {
     private final Canvas canvas;
     private final GraphicsContext gContext;
     private final CanvasMapModel model;
-    private final TreeMapLayout treeMapLayout;
+    private NestedTreeMapLayout nestedTreeMapLayout = null;
 
     // TODO: use TreeMapStyle
     private Color backgroundColor = TreeMapStyle.DEFAULT_BACKGROUND_COLOR;
@@ -56,15 +59,19 @@ public class CanvasTreeMap extends TreeMap {
     private double padding = 0;
     private double borderRadius = 0;
     private double strokeWidth = 1;
+    private int nestedDepth = 1;
+    private LayoutNode nestedLayout = null;
+    // what is currently drawn on the canvas, to only redraw what changed
+    private LayoutNode drawnLayout = null;
+    private boolean fullRedraw = true;
 
     public CanvasTreeMap(MapData data, boolean withLayoutDelay) {
         super(withLayoutDelay);
         canvas = new Canvas(getWidth(), getHeight());
         gContext = canvas.getGraphicsContext2D();
         //
-        treeMapLayout = new TreeMapLayout();
         model = new CanvasMapModel(data, getWidth(), getHeight());
-        data.addPropertyChangeListener(CanvasTreeMap.this);
+        data.addValueListener((source, oldValue, newValue) -> requestLayoutUpdate());
         getContainer().getChildren().add(canvas);
         requestLayoutUpdate();
     }
@@ -111,54 +118,146 @@ public class CanvasTreeMap extends TreeMap {
     @Override
     public void setBackgroundColor(Color newBackgroundColor) {
         backgroundColor = newBackgroundColor;
+        fullRedraw = true;
         requestLayoutUpdate();
     }
 
     @Override
     public void setDataFill(Color dataFillColor) {
         fillColor = dataFillColor;
+        fullRedraw = true;
         requestLayoutUpdate();
     }
 
     @Override
     public void setDataStroke(Color newStrokeColor) {
         strokeColor = newStrokeColor;
+        fullRedraw = true;
         requestLayoutUpdate();
     }
 
     @Override
     public void setDataBorderRadius(double newBorderRadius) {
         borderRadius = newBorderRadius;
+        fullRedraw = true;
         requestLayoutUpdate();
     }
 
     @Override
     public void setDataStrokeWidth(double newStrokeWidth) {
         strokeWidth = newStrokeWidth;
+        fullRedraw = true;
         requestLayoutUpdate();
     }
 
     @Override
     public void setPadding(double newPaddingValue) {
         padding = newPaddingValue;
+        // the insets of the nested layout change too
+        nestedLayout = null;
+        fullRedraw = true;
+        requestLayoutUpdate();
+    }
+
+    /**
+     * Get the number of data levels drawn below the root data.
+     *
+     * @return the number of levels drawn
+     */
+    public int getNestedDepth() {
+        return nestedDepth;
+    }
+
+    /**
+     * Sets the number of data levels drawn below the root data. With a depth
+     * greater than 1, the whole hierarchy down to this depth is laid out in a
+     * single pass, sibling subtrees being laid out in parallel, and each data
+     * is drawn inside its parent. Only the subtrees which data changed are
+     * then laid out and drawn again.
+     *
+     * @param depth the number of levels to be drawn, at least 1
+     */
+    public void setNestedDepth(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth shall be at least 1, but was " + depth);
+        }
+        nestedDepth = depth;
+        nestedLayout = null;
+        fullRedraw = true;
         requestLayoutUpdate();
     }
 
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
-        if (TreeMapUtils.MAP_DATA_VALUE_CHANGED.equals(evt.getPropertyName())) {
-            requestLayoutUpdate();
-        }
+        // value changes are followed with a value listener on the data
     }
 
     @Override
     protected void applyLayout() {
         LOG.log(Level.FINE, "Applying layout update");
-        model.setSize(getWidth(), getHeight());
-        treeMapLayout.layout(model, new Rect(0, 0, getWidth(), getHeight()));
-        canvas.setWidth(getWidth());
-        canvas.setHeight(getHeight());
-        draw();
+        if (nestedDepth > 1) {
+            // nested layouts read the whole hierarchy and stay synchronous
+            if (getBackgroundLayout() != null) {
+                getBackgroundLayout().cancel();
+            }
+            if (nestedTreeMapLayout == null || nestedTreeMapLayout.getTreeMapLayout() != getTreeMapLayout()) {
+                nestedTreeMapLayout = new NestedTreeMapLayout(getTreeMapLayout(), ForkJoinPool.commonPool());
+                // the previous layout was computed by another algorithm
+                nestedLayout = null;
+            }
+            nestedLayout = nestedTreeMapLayout.layout(model.getData(), new Rect(0, 0, getWidth(), getHeight()), nestedDepth, 2 * padding, nestedLayout);
+        } else {
+            nestedLayout = null;
+            fullRedraw = true;
+            model.setSize(getWidth(), getHeight());
+            if (getBackgroundLayout() != null) {
+                double width = getWidth();
+                double height = getHeight();
+                getBackgroundLayout().submit(getTreeMapLayout(), model, new Rect(0, 0, width, height), getLayoutCache(), () -> {
+                    canvas.setWidth(width);
+                    canvas.setHeight(height);
+                    draw();
+                });
+                return;
+            }
+            getTreeMapLayout().layout(model, new Rect(0, 0, getWidth(), getHeight()), model.getLayoutResult(), getLayoutCache());
+        }
+        if (canvas.getWidth() != getWidth() || canvas.getHeight() != getHeight()) {
+            canvas.setWidth(getWidth());
+            canvas.setHeight(getHeight());
+            fullRedraw = true;
+        }
+        if (!fullRedraw && drawnLayout != null && nestedLayout != null
+                && drawnLayout.getChildCount() == nestedLayout.getChildCount()) {
+            drawChanges();
+        } else {
+            draw();
+        }
+        drawnLayout = nestedLayout;
+        fullRedraw = false;
+    }
+
+    /**
+     * Redraws the top level regions which layout is not the one drawn. The
+     * top level nodes covering the canvas, the other regions are unchanged.
+     */
+    private void drawChanges() {
+        gContext.setStroke(strokeColor);
+        gContext.setLineWidth(strokeWidth);
+        for (int i = 0; i < nestedLayout.getChildCount(); i++) {
+            LayoutNode node = nestedLayout.getChild(i);
+            if (node != drawnLayout.getChild(i)) {
+                gContext.save();
+                gContext.beginPath();
+                gContext.rect(node.getX(), node.getY(), node.getWidth(), node.getHeight());
+                gContext.clip();
+                gContext.setFill(backgroundColor);
+                gContext.fillRect(node.getX(), node.getY(), node.getWidth(), node.getHeight());
+                gContext.setFill(fillColor);
+                drawNested(node);
+                gContext.restore();
+            }
+        }
     }
 
     private void draw() {
@@ -169,26 +268,53 @@ public class CanvasTreeMap extends TreeMap {
         gContext.setStroke(strokeColor);
         gContext.setFill(fillColor);
         gContext.setLineWidth(strokeWidth);
-        model.getCanvasItems().forEach(
-                item -> {
-                    gContext.fillRoundRect(
-                            item.getBounds().getX() + padding,
-                            item.getBounds().getY() + padding,
-                            item.getBounds().getWidth() - 2 * padding,
-                            item.getBounds().getHeight() - 2 * padding,
-                            borderRadius,
-                            borderRadius);
-                    gContext.strokeRoundRect(
-                            item.getBounds().getX() + padding,
-                            item.getBounds().getY() + padding,
-                            item.getBounds().getWidth() - 2 * padding,
-                            item.getBounds().getHeight() - 2 * padding,
-                            borderRadius,
-                            borderRadius);
+        if (nestedLayout != null) {
+            nestedLayout.getChildren().forEach(this::drawNested);
+        } else {
+            LayoutResult result = getBackgroundLayout() != null ? getBackgroundLayout().getFrontBuffer() : model.getLayoutResult();
+            List<CanvasMapItem> items = model.getCanvasItems();
+            boolean matching = result.size() == items.size();
+            boolean aggregated = matching && result.getAggregatedCount() > 0;
+            for (int i = 0; i < items.size(); i++) {
+                if (!matching || !result.isSkipped(i) && !result.isAggregated(i)) {
+                    Rect bounds = items.get(i).getBounds();
+                    drawItem(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
                 }
-        );
+            }
+            if (aggregated) {
+                drawItem(result.getAggregateX(), result.getAggregateY(), result.getAggregateWidth(), result.getAggregateHeight());
+            }
+        }
         gContext.closePath();
         gContext.stroke();
     }
 
+    private void drawNested(LayoutNode node) {
+        if (node.getWidth() <= 0 || node.getHeight() <= 0) {
+            // aggregated or empty data, neither it nor its children are visible
+            return;
+        }
+        drawItem(node.getX(), node.getY(), node.getWidth(), node.getHeight());
+        for (int i = 0; i < node.getChildCount(); i++) {
+            drawNested(node.getChild(i));
+        }
+    }
+
+    private void drawItem(double x, double y, double w, double h) {
+        gContext.fillRoundRect(
+                x + padding,
+                y + padding,
+                w - 2 * padding,
+                h - 2 * padding,
+                borderRadius,
+                borderRadius);
+        gContext.strokeRoundRect(
+                x + padding,
+                y + padding,
+                w - 2 * padding,
+                h - 2 * padding,
+                borderRadius,
+                borderRadius);
+    }
+
 }
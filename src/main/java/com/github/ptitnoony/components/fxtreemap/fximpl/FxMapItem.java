@@ -28,7 +28,7 @@ import com.github.ptitnoony.components.fxtreemap.MapItem;
 import com.github.ptitnoony.components.fxtreemap.Rect;
 import com.github.ptitnoony.components.fxtreemap.TreeMapStyle;
 import com.github.ptitnoony.components.fxtreemap.TreeMapUtils;
-import java.beans.PropertyChangeSupport;
+import java.beans.PropertyChangeEvent;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.geometry.Bounds;
@@ -57,16 +57,18 @@ public class FxMapItem implements MapItem {
     private static final double DEFAULT_TEXT_HEIGHT = 20;
     private static final double DEFAULT_TOOLTIP_FONT_SIZE = 20;
 
-    private final PropertyChangeSupport propertyChangeSupport;
-
     private final FxMapModel mapModel;
     private final MapData itemData;
     private final Rect rect;
-    private final Group mainNode;
-    private final Rectangle rectangle;
-    private final Label label;
-    private final Tooltip tooltip;
+    // the nodes are only created once the item is shown
+    private Group mainNode = null;
+    private Rectangle rectangle;
+    private Label label;
+    private Tooltip tooltip;
     private double padding = 0;
+    private double strokeWidth;
+    private double borderRadius;
+    private Color fontColor;
 
     private Color fillColor;
     private Color strokeColor;
@@ -77,19 +79,7 @@ public class FxMapItem implements MapItem {
         mapModel = model;
         itemData = data;
         rect = new Rect();
-        rectangle = new Rectangle();
-        label = new Label(itemData.getName());
-        tooltip = new Tooltip(itemData.getName());
-        tooltip.setFont(new Font(DEFAULT_TOOLTIP_FONT_SIZE));
-        mainNode = new Group(rectangle, label);
-        Tooltip.install(label, tooltip);
         applyStyle(model.getStyle());
-        if (data.hasChildrenData()) {
-            rectangle.setEffect(new Glow());
-        }
-        propertyChangeSupport = new PropertyChangeSupport(FxMapItem.this);
-        propertyChangeSupport.addPropertyChangeListener(model);
-        initInteractivity();
     }
 
     @Override
@@ -149,7 +139,9 @@ public class FxMapItem implements MapItem {
      */
     public void setBackgroundColor(Color newBackgroundColor) {
         fillColor = newBackgroundColor;
-        rectangle.setFill(fillColor);
+        if (mainNode != null) {
+            rectangle.setFill(fillColor);
+        }
     }
 
     /**
@@ -159,7 +151,9 @@ public class FxMapItem implements MapItem {
      */
     public void setStroke(Color newStrokeColor) {
         strokeColor = newStrokeColor;
-        rectangle.setStroke(strokeColor);
+        if (mainNode != null) {
+            rectangle.setStroke(strokeColor);
+        }
     }
 
     /**
@@ -168,7 +162,10 @@ public class FxMapItem implements MapItem {
      * @param newStrokeWidth the new map item stroke width
      */
     public void setStrokeWidth(double newStrokeWidth) {
-        rectangle.setStrokeWidth(newStrokeWidth);
+        strokeWidth = newStrokeWidth;
+        if (mainNode != null) {
+            rectangle.setStrokeWidth(strokeWidth);
+        }
     }
 
     /**
@@ -196,8 +193,11 @@ public class FxMapItem implements MapItem {
      * @param newBorderRadius the new border radius
      */
     public void setBorderRadius(double newBorderRadius) {
-        rectangle.setArcWidth(newBorderRadius);
-        rectangle.setArcHeight(newBorderRadius);
+        borderRadius = newBorderRadius;
+        if (mainNode != null) {
+            rectangle.setArcWidth(borderRadius);
+            rectangle.setArcHeight(borderRadius);
+        }
     }
 
     /**
@@ -207,30 +207,43 @@ public class FxMapItem implements MapItem {
      */
     public void setPadding(double newPaddingValue) {
         padding = newPaddingValue;
-        applyLayout();
+        if (mainNode != null) {
+            applyLayout();
+        }
     }
 
     /**
      * Set font color for the item.
      *
-     * @param fontColor the font color
+     * @param newFontColor the font color
      */
-    public void setFontColor(Color fontColor) {
-        label.setTextFill(fontColor);
+    public void setFontColor(Color newFontColor) {
+        fontColor = newFontColor;
+        if (mainNode != null) {
+            label.setTextFill(fontColor);
+        }
     }
 
     /**
      *
-     * @return the map item node to be added to the scene
+     * @return the map item node to be added to the scene, created on first
+     * call
      */
     protected Node getNode() {
+        if (mainNode == null) {
+            createNode();
+        }
         return mainNode;
     }
 
     /**
-     * Applies the layout values set up using the setBounds methods.
+     * Applies the layout values set up using the setBounds methods, creating
+     * the item node if needed.
      */
     protected void applyLayout() {
+        if (mainNode == null) {
+            createNode();
+        }
         rectangle.setX(rect.getX() + padding);
         rectangle.setY(rect.getY() + padding);
         rectangle.setWidth(rect.getWidth() - 2.0 * padding);
@@ -265,6 +278,25 @@ public class FxMapItem implements MapItem {
         }
     }
 
+    private void createNode() {
+        rectangle = new Rectangle();
+        rectangle.setFill(fillColor);
+        rectangle.setStroke(strokeColor);
+        rectangle.setStrokeWidth(strokeWidth);
+        rectangle.setArcWidth(borderRadius);
+        rectangle.setArcHeight(borderRadius);
+        label = new Label(itemData.getName());
+        label.setTextFill(fontColor);
+        tooltip = new Tooltip(itemData.getName());
+        tooltip.setFont(new Font(DEFAULT_TOOLTIP_FONT_SIZE));
+        mainNode = new Group(rectangle, label);
+        Tooltip.install(label, tooltip);
+        if (itemData.hasChildrenData()) {
+            rectangle.setEffect(new Glow());
+        }
+        initInteractivity();
+    }
+
     private void initInteractivity() {
         rectangle.setOnMouseEntered(this::handleMouseEntered);
         rectangle.setOnMouseExited(this::handleMouseExited);
@@ -287,7 +319,8 @@ public class FxMapItem implements MapItem {
     private void handleMouseClicked(MouseEvent event) {
         LOG.log(Level.FINE, "handleMouseClicked {0}:: {1}", new Object[]{itemData.getName(), event});
         if (itemData.hasChildrenData()) {
-            propertyChangeSupport.firePropertyChange(TreeMapUtils.ITEM_CLICKED, null, itemData);
+            // the model is the only listener of the item clicks
+            mapModel.propertyChange(new PropertyChangeEvent(this, TreeMapUtils.ITEM_CLICKED, null, itemData));
         }
     }
 
@@ -23,6 +23,7 @@
  */
 package com.github.ptitnoony.components.fxtreemap.fximpl;
 
+import com.github.ptitnoony.components.fxtreemap.LayoutResult;
 import com.github.ptitnoony.components.fxtreemap.MapData;
 import com.github.ptitnoony.components.fxtreemap.MapModel;
 import com.github.ptitnoony.components.fxtreemap.TreeMapStyle;
@@ -30,7 +31,7 @@ import com.github.ptitnoony.components.fxtreemap.TreeMapUtils;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -41,13 +42,15 @@ public class FxMapModel implements MapModel {
 
     private final List<FxMapItem> mapItems;
     private final MapData modelData;
+    private final LayoutResult layoutResult;
     private final PropertyChangeSupport propertyChangeSupport;
     private double totalArea;
     private TreeMapStyle style;
 
     public FxMapModel(FxTreeMap treeMap, MapData mapData, double width, double height) {
         modelData = mapData;
-        mapItems = new LinkedList<>();
+        layoutResult = new LayoutResult();
+        mapItems = new ArrayList<>(mapData.getChildrenData().size());
         propertyChangeSupport = new PropertyChangeSupport(FxMapModel.this);
         propertyChangeSupport.addPropertyChangeListener(treeMap);
         style = new TreeMapStyle();
@@ -57,7 +60,6 @@ public class FxMapModel implements MapModel {
             FxMapItem mapItem = new FxMapItem(FxMapModel.this, d);
             mapItems.add(mapItem);
         });
-        modelData.addPropertyChangeListener(this::handleModelChange);
     }
 
     @Override
@@ -115,13 +117,16 @@ public class FxMapModel implements MapModel {
         return totalArea;
     }
 
-    protected List<FxMapItem> getFxItems() {
-        return mapItems;
+    /**
+     * Get the buffer in which the model items are laid out.
+     *
+     * @return the model layout result
+     */
+    public LayoutResult getLayoutResult() {
+        return layoutResult;
     }
 
-    private void handleModelChange(PropertyChangeEvent event) {
-        if (TreeMapUtils.MAP_DATA_VALUE_CHANGED.equals(event.getPropertyName())) {
-            propertyChangeSupport.firePropertyChange(TreeMapUtils.MAP_DATA_VALUE_CHANGED, null, modelData.getValue());
-        }
+    protected List<FxMapItem> getFxItems() {
+        return mapItems;
     }
 }
@@ -23,20 +23,23 @@
  */
 package com.github.ptitnoony.components.fxtreemap.fximpl;
 
+import com.github.ptitnoony.components.fxtreemap.BackgroundLayout;
+import com.github.ptitnoony.components.fxtreemap.LayoutResult;
 import com.github.ptitnoony.components.fxtreemap.MapData;
 import com.github.ptitnoony.components.fxtreemap.Rect;
 import com.github.ptitnoony.components.fxtreemap.TreeMap;
-import com.github.ptitnoony.components.fxtreemap.TreeMapLayout;
 import com.github.ptitnoony.components.fxtreemap.TreeMapStyle;
 import com.github.ptitnoony.components.fxtreemap.TreeMapUtils;
 import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import static javafx.application.Platform.runLater;
 import javafx.geometry.Insets;
+import javafx.scene.Node;
 import javafx.scene.control.TreeItem;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.Background;
@@ -46,6 +49,7 @@ import javafx.scene.layout.Pane;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
 import org.controlsfx.control.BreadCrumbBar;
 import org.controlsfx.control.BreadCrumbBar.BreadCrumbActionEvent;
 
@@ -58,7 +62,6 @@ public class FxTreeMap extends TreeMap {
     private static final Logger LOG = Logger.getGlobal();
 
     private final FxMapModel model;
-    private final TreeMapLayout treeMapLayout;
 
     private VBox layout;
     private Pane pane;
@@ -67,28 +70,31 @@ public class FxTreeMap extends TreeMap {
     private MapData currentData = null;
     private Map<MapData, TreeItem<MapData>> treeItems;
     private Map<MapData, FxMapModel> mapLevels;
+    // tile standing for the items too small to be shown
+    private final Rectangle aggregateTile;
 
     private TreeMapStyle style = new TreeMapStyle();
 
     public FxTreeMap(MapData mapData, boolean withLayoutDelay) {
         super(withLayoutDelay);
         //
-        treeMapLayout = new TreeMapLayout();
         mapLevels = new HashMap<>();
         treeItems = new HashMap<>();
         model = new FxMapModel(FxTreeMap.this, mapData, getWidth(), getHeight());
-        mapData.addPropertyChangeListener(this::handleModelChange);
+        mapData.addValueListener(this::handleModelChange);
         mapLevels.put(model.getData(), model);
         currentModel = model;
         model.setTreeMapStyle(style);
         style.addPropertyChangeListener(this::handleStyleChanged);
+        aggregateTile = new Rectangle();
+        aggregateTile.setOnMouseClicked(event -> setAggregateExpanded(true));
+        applyAggregateStyle();
         //
         layout = new VBox(8);
         layout.setPadding(new Insets(8));
         //
         breadCrumbBar = new BreadCrumbBar();
         pane = new Pane();
-        pane.getChildren().addAll(model.getFxItems().stream().map(i -> i.getNode()).collect(Collectors.toList()));
         layout.getChildren().add(breadCrumbBar);
         layout.getChildren().add(pane);
         VBox.setVgrow(breadCrumbBar, Priority.NEVER);
@@ -194,7 +200,6 @@ public class FxTreeMap extends TreeMap {
             }
             currentData = data;
             updateBreadCrumbBar();
-            pane.getChildren().setAll(currentModel.getFxItems().stream().map(i -> i.getNode()).collect(Collectors.toList()));
             requestLayoutUpdate();
         }
     }
@@ -214,8 +219,52 @@ public class FxTreeMap extends TreeMap {
         double width = pane != null ? pane.getWidth() : 0;
         double height = pane != null ? pane.getHeight() : 0;
         currentModel.setSize(width, height);
-        treeMapLayout.layout(currentModel, new Rect(0, 0, width, height));
-        currentModel.getFxItems().forEach(FxMapItem::applyLayout);
+        BackgroundLayout backgroundLayout = getBackgroundLayout();
+        if (backgroundLayout != null) {
+            FxMapModel laidOutModel = currentModel;
+            backgroundLayout.submit(getTreeMapLayout(), laidOutModel, new Rect(0, 0, width, height), getLayoutCache(),
+                    () -> showLayout(laidOutModel, backgroundLayout.getFrontBuffer()));
+        } else {
+            showLayout(currentModel, getTreeMapLayout().layout(currentModel, new Rect(0, 0, width, height), currentModel.getLayoutResult(), getLayoutCache()));
+        }
+    }
+
+    /**
+     * Applies the layout to the items of the given model and only keeps the
+     * visible ones in the scene, the aggregated items being replaced by the
+     * aggregate tile. The nodes of the items are created when first shown.
+     */
+    private void showLayout(FxMapModel laidOutModel, LayoutResult result) {
+        List<FxMapItem> items = laidOutModel.getFxItems();
+        boolean matching = result.size() == items.size();
+        boolean aggregated = matching && result.getAggregatedCount() > 0;
+        List<Node> nodes = new ArrayList<>(matching ? items.size() - result.getSkippedCount() - result.getAggregatedCount() + 1 : items.size());
+        for (int i = 0; i < items.size(); i++) {
+            // skipped and aggregated items do not even get a node
+            if (!matching || !result.isSkipped(i) && !result.isAggregated(i)) {
+                items.get(i).applyLayout();
+                nodes.add(items.get(i).getNode());
+            }
+        }
+        if (aggregated) {
+            double padding = style.getPadding();
+            aggregateTile.setX(result.getAggregateX() + padding);
+            aggregateTile.setY(result.getAggregateY() + padding);
+            aggregateTile.setWidth(Math.max(0, result.getAggregateWidth() - 2 * padding));
+            aggregateTile.setHeight(Math.max(0, result.getAggregateHeight() - 2 * padding));
+            nodes.add(aggregateTile);
+        }
+        if (laidOutModel == currentModel && !pane.getChildren().equals(nodes)) {
+            pane.getChildren().setAll(nodes);
+        }
+    }
+
+    private void applyAggregateStyle() {
+        aggregateTile.setFill(style.getFillColor());
+        aggregateTile.setStroke(style.getStrokeColor());
+        aggregateTile.setStrokeWidth(style.getStrokeWidth());
+        aggregateTile.setArcWidth(style.getBorderRadius());
+        aggregateTile.setArcHeight(style.getBorderRadius());
     }
 
     private void handleBreadCrumbEvent(BreadCrumbActionEvent<MapData> bae) {
@@ -227,7 +276,6 @@ public class FxTreeMap extends TreeMap {
             } else {
                 currentModel = mapLevels.get(currentData);
             }
-            pane.getChildren().setAll(currentModel.getFxItems().stream().map(i -> i.getNode()).collect(Collectors.toList()));
             requestLayoutUpdate();
         }
     }
@@ -254,14 +302,13 @@ public class FxTreeMap extends TreeMap {
         breadCrumbBar.setSelectedCrumb(treeItems.get(currentData));
     }
 
-    private void handleModelChange(PropertyChangeEvent event) {
-        if (TreeMapUtils.MAP_DATA_VALUE_CHANGED.equals(event.getPropertyName())) {
-            requestLayoutUpdate();
-        }
+    private void handleModelChange(MapData source, double oldValue, double newValue) {
+        requestLayoutUpdate();
     }
 
     private void handleStyleChanged(PropertyChangeEvent event) {
         LOG.log(Level.FINE, "Updating after style changed: {0}", event);
         getContainer().setBackground(new Background(new BackgroundFill(style.getBackgroundColor(), CornerRadii.EMPTY, Insets.EMPTY)));
+        applyAggregateStyle();
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import com.github.ptitnoony.components.fxtreemap.canvasimpl.CanvasMapModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ahamon
+ */
+public class BackgroundLayoutTest {
+
+    private static final double WIDTH = 1200;
+    private static final double HEIGHT = 800;
+
+    private ExecutorService worker;
+    // stands for the JavaFX application thread queue
+    private BlockingQueue<Runnable> handoffs;
+
+    @Before
+    public void setUp() {
+        worker = Executors.newSingleThreadExecutor();
+        handoffs = new LinkedBlockingQueue<>();
+    }
+
+    @After
+    public void tearDown() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Test of submit method, of class BackgroundLayout: the bounds computed in
+     * the background are the ones of a synchronous layout.
+     */
+    @Test
+    public void testSubmit() throws InterruptedException {
+        CanvasMapModel model = createModel(new Random(3), 1000);
+        BackgroundLayout backgroundLayout = new BackgroundLayout(worker, handoffs::add);
+        AtomicInteger applied = new AtomicInteger();
+        backgroundLayout.submit(new TreeMapLayout(), model, new Rect(0, 0, WIDTH, HEIGHT), new LayoutCache(), applied::incrementAndGet);
+        // nothing is applied before the handoff
+        assertEquals(0, applied.get());
+        handoffs.poll(10, TimeUnit.SECONDS).run();
+        assertEquals(1, applied.get());
+        LayoutResult expected = new TreeMapLayout().layout(model.getItems(), new Rect(0, 0, WIDTH, HEIGHT), new LayoutResult());
+        for (int i = 0; i < expected.size(); i++) {
+            Rect bounds = model.getItems().get(i).getBounds();
+            assertEquals(expected.getX(i), bounds.getX(), 0);
+            assertEquals(expected.getY(i), bounds.getY(), 0);
+            assertEquals(expected.getWidth(i), bounds.getWidth(), 0);
+            assertEquals(expected.getHeight(i), bounds.getHeight(), 0);
+            assertEquals(expected.getX(i), backgroundLayout.getFrontBuffer().getX(i), 0);
+        }
+    }
+
+    /**
+     * Test of submit method, of class BackgroundLayout: only the latest of
+     * several submitted layouts is applied.
+     */
+    @Test
+    public void testStaleLayoutsDiscarded() throws InterruptedException {
+        CanvasMapModel model = createModel(new Random(5), 1000);
+        BackgroundLayout backgroundLayout = new BackgroundLayout(worker, handoffs::add);
+        CountDownLatch blocker = new CountDownLatch(1);
+        worker.submit(() -> {
+            blocker.await();
+            return null;
+        });
+        List<Integer> applied = new ArrayList<>();
+        TreeMapLayout layout = new TreeMapLayout();
+        LayoutCache cache = new LayoutCache();
+        for (int i = 1; i <= 3; i++) {
+            int width = 100 * i;
+            model.setSize(width, HEIGHT);
+            backgroundLayout.submit(layout, model, new Rect(0, 0, width, HEIGHT), cache, () -> applied.add(width));
+        }
+        blocker.countDown();
+        Runnable handoff;
+        while ((handoff = handoffs.poll(1, TimeUnit.SECONDS)) != null) {
+            handoff.run();
+        }
+        assertEquals(List.of(300), applied);
+        assertEquals(3, backgroundLayout.getGeneration());
+        double totalArea = 0;
+        for (MapItem item : model.getItems()) {
+            assertTrue(item.getBounds().getX() + item.getBounds().getWidth() <= 300 + 1e-6);
+            totalArea += item.getBounds().getWidth() * item.getBounds().getHeight();
+        }
+        assertEquals(300 * HEIGHT, totalArea, 1e-6 * totalArea);
+        // the same layout is now restored from the cache, without handoff
+        backgroundLayout.submit(layout, model, new Rect(0, 0, 300, HEIGHT), cache, () -> applied.add(0));
+        assertEquals(List.of(300, 0), applied);
+        assertEquals(1, cache.getHitCount());
+    }
+
+    /**
+     * Test of submit method, of class BackgroundLayout: the buffers of the
+     * layouts cancelled while queued behind a busy worker are reused.
+     */
+    @Test
+    public void testCancelledBuffersReused() throws InterruptedException {
+        CanvasMapModel model = createModel(new Random(11), 100);
+        BackgroundLayout backgroundLayout = new BackgroundLayout(worker, handoffs::add);
+        Set<LayoutResult> frontBuffers = Collections.newSetFromMap(new IdentityHashMap<>());
+        frontBuffers.add(backgroundLayout.getFrontBuffer());
+        TreeMapLayout layout = new TreeMapLayout();
+        LayoutCache cache = new LayoutCache();
+        for (int round = 0; round < 3; round++) {
+            CountDownLatch blocker = new CountDownLatch(1);
+            worker.submit(() -> {
+                blocker.await();
+                return null;
+            });
+            for (int i = 1; i <= 5; i++) {
+                int width = 100 * (5 * round + i);
+                backgroundLayout.submit(layout, model, new Rect(0, 0, width, HEIGHT), cache, () -> {
+                });
+            }
+            blocker.countDown();
+            handoffs.poll(10, TimeUnit.SECONDS).run();
+            frontBuffers.add(backgroundLayout.getFrontBuffer());
+        }
+        // the front and back buffers only
+        assertEquals(2, frontBuffers.size());
+        assertNull(handoffs.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private static CanvasMapModel createModel(Random random, int count) {
+        List<MapData> children = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            children.add(new ConcreteMapData(Math.exp(random.nextGaussian() * 2)));
+        }
+        return new CanvasMapModel(new ConcreteMapData("root", children), WIDTH, HEIGHT);
+    }
+}
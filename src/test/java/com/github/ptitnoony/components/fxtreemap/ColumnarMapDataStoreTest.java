@@ -0,0 +1,196 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import com.github.ptitnoony.components.fxtreemap.canvasimpl.CanvasMapModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ahamon
+ */
+public class ColumnarMapDataStoreTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * Test of copyOf method, of class ColumnarMapDataStore: the views have
+     * the same names, values and structure as the copied hierarchy.
+     */
+    @Test
+    public void testCopyOf() {
+        MapData root = createTree(new Random(3), 4, 5);
+        ColumnarMapDataStore store = ColumnarMapDataStore.copyOf(root);
+        assertSameHierarchy(root, store.getRoot());
+        assertEquals(store.getRoot(), store.getData(0));
+        assertEquals(store.getRoot().hashCode(), store.getData(0).hashCode());
+        assertNotEquals(store.getRoot(), ColumnarMapDataStore.copyOf(root).getRoot());
+        // names are shared in the dictionary
+        assertEquals(5, store.getDictionarySize());
+    }
+
+    /**
+     * Test of build method, of class ColumnarMapDataStore.Builder: nodes added
+     * depth first are stored breadth first.
+     */
+    @Test
+    public void testBuilder() {
+        ColumnarMapDataStore.Builder builder = new ColumnarMapDataStore.Builder();
+        int root = builder.addNode(MapDataStore.NO_PARENT, "root", 0);
+        int a = builder.addNode(root, "a", 0);
+        builder.addNode(a, "a1", 1);
+        builder.addNode(a, "a2", 2);
+        builder.addNode(root, "b", 4);
+        ColumnarMapDataStore store = builder.build();
+        assertEquals(5, store.getNodeCount());
+        assertEquals("b", store.getName(2));
+        assertEquals("a1", store.getName(3));
+        assertEquals(1, store.getParent(3));
+        assertEquals(3, store.getFirstChild(1));
+        assertEquals(2, store.getChildCount(1));
+        assertEquals(0, store.getChildCount(2));
+        assertEquals(7, store.getRoot().getValue(), 0);
+        assertEquals(3, store.getData(1).getValue(), 0);
+        assertEquals(MapData.DataType.LEAF, store.getData(2).getType());
+    }
+
+    /**
+     * Test of setValue method, of class MapDataStore: a leaf change is
+     * propagated to its ancestors and notified.
+     */
+    @Test
+    public void testSetLeafValue() {
+        ColumnarMapDataStore store = ColumnarMapDataStore.copyOf(createTree(new Random(5), 3, 4));
+        MapData root = store.getRoot();
+        MapData node = root.getChildrenData().get(0);
+        MapData leaf = node.getChildrenData().get(0).getChildrenData().get(0);
+        List<String> events = new ArrayList<>();
+        root.addPropertyChangeListener(e -> events.add("root"));
+        store.getData(1).addPropertyChangeListener(e -> events.add("node"));
+        leaf.addPropertyChangeListener(e -> {
+            assertEquals(leaf, e.getSource());
+            events.add("leaf");
+        });
+        double rootValue = root.getValue();
+        double nodeValue = node.getValue();
+        long version = root.getVersion();
+        leaf.setValue(leaf.getValue() + 10);
+        assertEquals(rootValue + 10, root.getValue(), TOLERANCE);
+        assertEquals(nodeValue + 10, node.getValue(), TOLERANCE);
+        assertEquals(List.of("leaf", "node", "root"), events);
+        assertTrue(root.getVersion() > version);
+        assertSums(store);
+    }
+
+    /**
+     * Test of setValue method, of class MapDataStore: descendants of a node
+     * are scaled.
+     */
+    @Test
+    public void testSetNodeValue() {
+        ColumnarMapDataStore store = ColumnarMapDataStore.copyOf(createTree(new Random(7), 4, 4));
+        MapData node = store.getRoot().getChildrenData().get(0);
+        double leafValue = store.getValue(store.getNodeCount() - 1);
+        node.setValue(node.getValue() * 3);
+        assertSums(store);
+        node.setValue(0);
+        assertEquals(0, node.getValue(), 0);
+        assertSums(store);
+        assertEquals(leafValue, store.getValue(store.getNodeCount() - 1), 0);
+    }
+
+    /**
+     * Test of getChildrenData method, of class MapDataStore: the views can be
+     * laid out like any other data.
+     */
+    @Test
+    public void testLayoutViews() {
+        ColumnarMapDataStore store = ColumnarMapDataStore.copyOf(createTree(new Random(11), 2, 50));
+        CanvasMapModel model = new CanvasMapModel(store.getRoot(), 1200, 800);
+        new TreeMapLayout().layout(model, new Rect(0, 0, 1200, 800), model.getLayoutResult());
+        double totalArea = 0;
+        for (MapItem item : model.getItems()) {
+            totalArea += item.getBounds().getWidth() * item.getBounds().getHeight();
+        }
+        assertEquals(1200 * 800, totalArea, 1e-6 * totalArea);
+    }
+
+    /**
+     * Test of build method, of class ColumnarMapDataStore.Builder, on a
+     * million leaves.
+     */
+    @Test(timeout = 10000)
+    public void testMillionLeaves() {
+        ColumnarMapDataStore.Builder builder = new ColumnarMapDataStore.Builder();
+        builder.addNode(MapDataStore.NO_PARENT, "root", 0);
+        for (int i = 0; i < 1000; i++) {
+            builder.addNode(0, "node", 0);
+        }
+        for (int i = 0; i < 1_000_000; i++) {
+            builder.addNode(1 + i % 1000, "leaf", 1);
+        }
+        ColumnarMapDataStore store = builder.build();
+        assertEquals(1_000_000, store.getRoot().getValue(), 0);
+        assertEquals(1000, store.getRoot().getChildrenData().get(999).getValue(), 0);
+        assertEquals(3, store.getDictionarySize());
+    }
+
+    static MapData createTree(Random random, int depth, int maxChildren) {
+        if (depth == 0) {
+            return new ConcreteMapData("leaf", 1 + random.nextInt(100));
+        }
+        int nbChildren = 1 + random.nextInt(maxChildren);
+        List<MapData> children = new ArrayList<>(nbChildren);
+        for (int i = 0; i < nbChildren; i++) {
+            children.add(createTree(random, depth - 1, maxChildren));
+        }
+        return new ConcreteMapData("node" + depth, children);
+    }
+
+    static void assertSameHierarchy(MapData expected, MapData actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getValue(), actual.getValue(), TOLERANCE * expected.getValue());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getChildrenData().size(), actual.getChildrenData().size());
+        for (int i = 0; i < expected.getChildrenData().size(); i++) {
+            assertSameHierarchy(expected.getChildrenData().get(i), actual.getChildrenData().get(i));
+        }
+    }
+
+    static void assertSums(MapDataStore store) {
+        for (int node = 0; node < store.getNodeCount(); node++) {
+            if (store.getChildCount(node) > 0) {
+                double sum = 0;
+                for (int child = store.getFirstChild(node); child < store.getFirstChild(node) + store.getChildCount(node); child++) {
+                    sum += store.getValue(child);
+                }
+                assertEquals(sum, store.getValue(node), TOLERANCE * Math.max(1, sum));
+            }
+        }
+    }
+}
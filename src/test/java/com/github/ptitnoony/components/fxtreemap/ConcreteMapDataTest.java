@@ -23,7 +23,12 @@
  */
 package com.github.ptitnoony.components.fxtreemap;
 
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.junit.Test;
@@ -205,4 +210,331 @@ public class ConcreteMapDataTest {
 
     }
 
+    /**
+     * Test of runBatch method, of class ConcreteMapData: each changed data
+     * notifies a single event once the batch is committed.
+     */
+    @Test
+    public void testBatch() {
+        List<ConcreteMapData> leaves = new ArrayList<>();
+        List<MapData> nodes = new ArrayList<>();
+        for (int n = 0; n < 3; n++) {
+            List<MapData> nodeLeaves = new ArrayList<>();
+            for (int l = 0; l < 100; l++) {
+                ConcreteMapData leaf = new ConcreteMapData("leaf", 1);
+                leaves.add(leaf);
+                nodeLeaves.add(leaf);
+            }
+            nodes.add(new ConcreteMapData("node" + n, nodeLeaves));
+        }
+        ConcreteMapData root = new ConcreteMapData("root", nodes);
+        AtomicInteger rootEvents = new AtomicInteger();
+        AtomicInteger nodeEvents = new AtomicInteger();
+        AtomicInteger leafEvents = new AtomicInteger();
+        root.addPropertyChangeListener(e -> rootEvents.incrementAndGet());
+        nodes.forEach(node -> node.addPropertyChangeListener(e -> nodeEvents.incrementAndGet()));
+        leaves.forEach(leaf -> leaf.addPropertyChangeListener(e -> leafEvents.incrementAndGet()));
+        root.runBatch(() -> {
+            // the leaves of the first two nodes
+            for (int l = 0; l < 200; l++) {
+                leaves.get(l).setValue(2);
+            }
+            // unchanged value
+            leaves.get(250).setValue(1);
+            assertEquals(300, root.getValue(), TreeMapUtils.EPSILON);
+            assertEquals(0, rootEvents.get() + nodeEvents.get() + leafEvents.get());
+        });
+        assertEquals(500, root.getValue(), TreeMapUtils.EPSILON);
+        assertEquals(200, nodes.get(0).getValue(), TreeMapUtils.EPSILON);
+        assertEquals(100, nodes.get(2).getValue(), TreeMapUtils.EPSILON);
+        assertEquals(1, rootEvents.get());
+        assertEquals(2, nodeEvents.get());
+        assertEquals(200, leafEvents.get());
+        // outside of a batch, changes are propagated immediately
+        leaves.get(0).setValue(3);
+        assertEquals(501, root.getValue(), TreeMapUtils.EPSILON);
+        assertEquals(2, rootEvents.get());
+    }
+
+    /**
+     * Test of beginBatch and commit methods, of class ConcreteMapData: nested
+     * batches are committed with the outermost one.
+     */
+    @Test
+    public void testNestedBatch() {
+        ConcreteMapData leaf = new ConcreteMapData("leaf", 1);
+        ConcreteMapData node = new ConcreteMapData("node", leaf, new ConcreteMapData(1));
+        ConcreteMapData root = new ConcreteMapData("root", node, new ConcreteMapData(1));
+        AtomicInteger rootEvents = new AtomicInteger();
+        root.addPropertyChangeListener(e -> rootEvents.incrementAndGet());
+        root.beginBatch();
+        node.runBatch(() -> leaf.setValue(5));
+        // the inner batch is committed into the outer one
+        assertEquals(6, node.getValue(), TreeMapUtils.EPSILON);
+        assertEquals(3, root.getValue(), TreeMapUtils.EPSILON);
+        node.setValue(12);
+        assertEquals(0, rootEvents.get());
+        root.commit();
+        assertEquals(10, leaf.getValue(), TreeMapUtils.EPSILON);
+        assertEquals(13, root.getValue(), TreeMapUtils.EPSILON);
+        assertEquals(1, rootEvents.get());
+    }
+
+    /**
+     * Test of commit method, of class ConcreteMapData, without batch.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testCommitWithoutBatch() {
+        new ConcreteMapData().commit();
+    }
+
+    /**
+     * Test of removeChildrenData method, of class ConcreteMapData: removed
+     * data no longer update their former parent.
+     */
+    @Test
+    public void testRemoveChildrenData() {
+        ConcreteMapData data1 = new ConcreteMapData("1", 1);
+        ConcreteMapData data2 = new ConcreteMapData("2", 2);
+        ConcreteMapData instance = new ConcreteMapData("d_12", data1, data2);
+        instance.removeChildrenData(data1);
+        assertEquals(2, instance.getValue(), TreeMapUtils.EPSILON);
+        data1.setValue(5);
+        assertEquals(2, instance.getValue(), TreeMapUtils.EPSILON);
+        instance.runBatch(() -> data1.setValue(6));
+        assertEquals(6, data1.getValue(), TreeMapUtils.EPSILON);
+    }
+
+    /**
+     * Test of removeChildrenData method, of class ConcreteMapData: a data
+     * changed then removed during a batch is left out of the commit, and
+     * later batches still propagate changes.
+     */
+    @Test
+    public void testRemoveChildrenDataDuringBatch() {
+        ConcreteMapData leaf = new ConcreteMapData("leaf", 1);
+        ConcreteMapData sibling = new ConcreteMapData("sibling", 2);
+        ConcreteMapData mid = new ConcreteMapData("mid", leaf, sibling);
+        ConcreteMapData root = new ConcreteMapData("root", mid, new ConcreteMapData(1));
+        root.beginBatch();
+        leaf.setValue(5);
+        mid.removeChildrenData(leaf);
+        root.commit();
+        assertEquals(2, mid.getValue(), TreeMapUtils.EPSILON);
+        assertEquals(3, root.getValue(), TreeMapUtils.EPSILON);
+        root.runBatch(() -> sibling.setValue(4));
+        assertEquals(4, mid.getValue(), TreeMapUtils.EPSILON);
+        assertEquals(5, root.getValue(), TreeMapUtils.EPSILON);
+        leaf.runBatch(() -> leaf.setValue(7));
+        assertEquals(7, leaf.getValue(), TreeMapUtils.EPSILON);
+    }
+
+    /**
+     * Test of setValue method, of class ConcreteMapData: a leaf change is
+     * applied to its ancestors as a delta, without summing its siblings.
+     */
+    @Test(timeout = 10000)
+    public void testDeltaPropagation() {
+        List<MapData> leaves = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            leaves.add(new ConcreteMapData(0.1));
+        }
+        ConcreteMapData node = new ConcreteMapData("node", leaves);
+        ConcreteMapData root = new ConcreteMapData("root", node, new ConcreteMapData(1));
+        List<Double> deltas = new ArrayList<>();
+        root.addPropertyChangeListener(e -> deltas.add((Double) e.getNewValue() - (Double) e.getOldValue()));
+        double expected = 100_000 * 0.1 + 1;
+        for (int i = 0; i < 100_000; i++) {
+            MapData leaf = leaves.get(i * 7919 % leaves.size());
+            double newValue = (i % 13) * 0.37;
+            expected += newValue - leaf.getValue();
+            leaf.setValue(newValue);
+        }
+        assertEquals(expected, root.getValue(), 1e-6);
+        double sum = 1;
+        for (MapData leaf : leaves) {
+            sum += leaf.getValue();
+        }
+        root.recalculateValue();
+        assertEquals(sum, root.getValue(), 0);
+        // the events carry the change of value
+        deltas.clear();
+        leaves.get(0).setValue(leaves.get(0).getValue() + 2);
+        assertEquals(List.of(2.0), deltas.stream().map(d -> Math.round(d * 1e6) / 1e6).toList());
+    }
+
+    /**
+     * Test of setValue method, of class ConcreteMapData: the children of a
+     * data without value cannot be scaled.
+     */
+    @Test
+    public void testSetValueOfZeroNode() {
+        ConcreteMapData data1 = new ConcreteMapData("1", 0);
+        ConcreteMapData data2 = new ConcreteMapData("2", 0);
+        ConcreteMapData instance = new ConcreteMapData("d_12", data1, data2);
+        instance.setValue(10);
+        assertEquals(0, instance.getValue(), 0);
+        assertEquals(0, data1.getValue(), 0);
+        data1.setValue(1);
+        data2.setValue(3);
+        instance.setValue(8);
+        assertEquals(2, data1.getValue(), TreeMapUtils.EPSILON);
+        assertEquals(6, data2.getValue(), TreeMapUtils.EPSILON);
+        assertEquals(8, instance.getValue(), TreeMapUtils.EPSILON);
+    }
+
+    /**
+     * Test of addValueListener method, of class ConcreteMapData.
+     */
+    @Test
+    public void testValueListener() {
+        ConcreteMapData data1 = new ConcreteMapData("1", 1);
+        ConcreteMapData data2 = new ConcreteMapData("2", 3);
+        ConcreteMapData instance = new ConcreteMapData("d_12", data1, data2);
+        List<double[]> changes = new ArrayList<>();
+        List<MapData> sources = new ArrayList<>();
+        ValueListener listener = (source, oldValue, newValue) -> {
+            sources.add(source);
+            changes.add(new double[]{oldValue, newValue});
+        };
+        instance.addValueListener(listener);
+        data1.addValueListener(listener);
+        data1.setValue(2);
+        // listeners are notified in registration order, the parent first
+        assertEquals(List.of(instance, data1), sources);
+        assertArrayEquals(new double[]{4, 5}, changes.get(0), 0);
+        assertArrayEquals(new double[]{1, 2}, changes.get(1), 0);
+        // unchanged values are not notified
+        data1.setValue(2);
+        assertEquals(2, changes.size());
+        instance.removeValueListener(listener);
+        data1.removeValueListener(listener);
+        data2.setValue(4);
+        data1.setValue(3);
+        assertEquals(2, changes.size());
+        assertEquals(7, instance.getValue(), 0);
+    }
+
+    /**
+     * Test of getStructureVersion method, of class ConcreteMapData.
+     */
+    @Test
+    public void testGetStructureVersion() {
+        ConcreteMapData data1 = new ConcreteMapData("1", 1);
+        ConcreteMapData node = new ConcreteMapData("n", data1);
+        ConcreteMapData root = new ConcreteMapData("root", node, new ConcreteMapData("2", 2));
+        long structureVersion = root.getStructureVersion();
+        long version = root.getVersion();
+        data1.setValue(3);
+        assertEquals(structureVersion, root.getStructureVersion());
+        assertNotEquals(version, root.getVersion());
+        node.addChildrenData(new ConcreteMapData("3", 0));
+        assertNotEquals(structureVersion, root.getStructureVersion());
+        structureVersion = root.getStructureVersion();
+        node.removeChildrenData(data1);
+        assertNotEquals(structureVersion, root.getStructureVersion());
+    }
+
+    /**
+     * Test of addValueListener method, of interface MapData: a data only
+     * notifying property changes still updates its ConcreteMapData parent.
+     */
+    @Test
+    public void testDefaultValueListener() {
+        PropertyChangeMapData child = new PropertyChangeMapData(2);
+        ConcreteMapData root = new ConcreteMapData("root", child, new ConcreteMapData(1));
+        assertEquals(3, root.getValue(), TreeMapUtils.EPSILON);
+        child.setValue(5);
+        assertEquals(6, root.getValue(), TreeMapUtils.EPSILON);
+        List<double[]> changes = new ArrayList<>();
+        ValueListener listener = (source, oldValue, newValue) -> changes.add(new double[]{oldValue, newValue});
+        child.addValueListener(listener);
+        child.setValue(4);
+        assertEquals(1, changes.size());
+        assertArrayEquals(new double[]{5, 4}, changes.get(0), 0);
+        child.removeValueListener(listener);
+        child.setValue(3);
+        assertEquals(1, changes.size());
+        // an event without old value makes the parent sum its children
+        child.setValueWithoutOldValue(7);
+        assertEquals(8, root.getValue(), TreeMapUtils.EPSILON);
+        root.removeChildrenData(child);
+        child.setValue(1);
+        assertEquals(1, root.getValue(), TreeMapUtils.EPSILON);
+    }
+
+    /**
+     * Leaf data only implementing the property change listeners.
+     */
+    private static final class PropertyChangeMapData implements MapData {
+
+        private final PropertyChangeSupport propertyChangeSupport = new PropertyChangeSupport(this);
+        private double value;
+
+        private PropertyChangeMapData(double dataValue) {
+            value = dataValue;
+        }
+
+        private void setValueWithoutOldValue(double newValue) {
+            value = newValue;
+            propertyChangeSupport.firePropertyChange(TreeMapUtils.MAP_DATA_VALUE_CHANGED, null, newValue);
+        }
+
+        @Override
+        public DataType getType() {
+            return DataType.LEAF;
+        }
+
+        @Override
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        public void setValue(double newValue) {
+            double oldValue = value;
+            value = newValue;
+            propertyChangeSupport.firePropertyChange(TreeMapUtils.MAP_DATA_VALUE_CHANGED, oldValue, newValue);
+        }
+
+        @Override
+        public String getName() {
+            return "propertyChange";
+        }
+
+        @Override
+        public void setName(String newName) {
+            // constant name
+        }
+
+        @Override
+        public boolean hasChildrenData() {
+            return false;
+        }
+
+        @Override
+        public List<MapData> getChildrenData() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void addChildrenData(MapData data) {
+            // leaf
+        }
+
+        @Override
+        public void removeChildrenData(MapData data) {
+            // leaf
+        }
+
+        @Override
+        public void addPropertyChangeListener(PropertyChangeListener listener) {
+            propertyChangeSupport.addPropertyChangeListener(listener);
+        }
+
+        @Override
+        public void removePropertyChangeListener(PropertyChangeListener listener) {
+            propertyChangeSupport.removePropertyChangeListener(listener);
+        }
+    }
 }
@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ahamon
+ */
+public class ConcurrentMapDataTest {
+
+    /**
+     * Test of setValue and addValue methods, of class ConcurrentMapData.
+     */
+    @Test
+    public void testSetValue() {
+        ConcurrentMapData data1 = new ConcurrentMapData("1", 1);
+        ConcurrentMapData data2 = new ConcurrentMapData("2", 3);
+        ConcurrentMapData instance = new ConcurrentMapData("d_12", data1, data2);
+        assertEquals(4, instance.getValue(), 0);
+        data1.setValue(2);
+        assertEquals(2, data2.addValue(-1), 0);
+        assertEquals(4, instance.getValue(), 0);
+        // negative values are ignored
+        data2.addValue(-4);
+        data2.setValue(-1);
+        assertEquals(2, data2.getValue(), 0);
+        instance.setValue(10);
+        assertEquals(5, data1.getValue(), TreeMapUtils.EPSILON);
+        assertEquals(5, data2.getValue(), TreeMapUtils.EPSILON);
+        assertEquals(10, instance.getValue(), TreeMapUtils.EPSILON);
+        instance.removeChildrenData(data1);
+        assertEquals(5, instance.getValue(), TreeMapUtils.EPSILON);
+        instance.addChildrenData(new ConcreteMapData("3", 1));
+        assertEquals(6, instance.getValue(), TreeMapUtils.EPSILON);
+        // changes of other data types are propagated too
+        ((ConcreteMapData) instance.getChildrenData().get(1)).setValue(2);
+        assertEquals(7, instance.getValue(), TreeMapUtils.EPSILON);
+    }
+
+    /**
+     * Test of getVersion method, of class ConcurrentMapData.
+     */
+    @Test
+    public void testGetVersion() {
+        ConcurrentMapData leaf = new ConcurrentMapData("1", 1);
+        ConcurrentMapData root = new ConcurrentMapData("root", new ConcurrentMapData("n", leaf));
+        long version = root.getVersion();
+        assertEquals(version, root.getVersion());
+        leaf.setValue(2);
+        assertNotEquals(version, root.getVersion());
+        version = root.getVersion();
+        leaf.setValue(2);
+        assertEquals(version, root.getVersion());
+        leaf.setValue(3);
+        assertNotEquals(version, root.getVersion());
+        // changes the version even though the value was not read since
+        version = root.getVersion();
+        leaf.setValue(4);
+        assertNotEquals(version, root.getVersion());
+        assertEquals(4, root.getValue(), 0);
+    }
+
+    /**
+     * Test of addValueListener method, of class ConcurrentMapData: a node
+     * notifies its value before and after each change of its children.
+     */
+    @Test
+    public void testValueListener() {
+        ConcurrentMapData data1 = new ConcurrentMapData("1", 1);
+        ConcurrentMapData data2 = new ConcurrentMapData("2", 3);
+        ConcurrentMapData instance = new ConcurrentMapData("d_12", data1, data2);
+        assertEquals(4, instance.getValue(), 0);
+        List<double[]> changes = new ArrayList<>();
+        instance.addValueListener((source, oldValue, newValue) -> changes.add(new double[]{oldValue, newValue}));
+        AtomicInteger leafChanges = new AtomicInteger();
+        data1.addValueListener((source, oldValue, newValue) -> leafChanges.incrementAndGet());
+        data1.setValue(2);
+        data1.setValue(5);
+        data2.setValue(1);
+        assertEquals(2, leafChanges.get());
+        // every change is notified, whether or not the value was read
+        assertEquals(3, changes.size());
+        assertArrayEquals(new double[]{4, 5}, changes.get(0), 0);
+        assertArrayEquals(new double[]{5, 8}, changes.get(1), 0);
+        assertArrayEquals(new double[]{8, 6}, changes.get(2), 0);
+        assertEquals(6, instance.getValue(), 0);
+        data2.setValue(2);
+        assertEquals(4, changes.size());
+        assertArrayEquals(new double[]{6, 7}, changes.get(3), 0);
+    }
+
+    /**
+     * Test of addValueListener method, of class ConcurrentMapData: a root
+     * listener is notified of every change while only a lower level is read,
+     * as when a view shows a child level.
+     */
+    @Test
+    public void testValueListenerWithoutRootRead() {
+        ConcurrentMapData leaf = new ConcurrentMapData("leaf", 1);
+        ConcurrentMapData mid = new ConcurrentMapData("mid", leaf, new ConcurrentMapData("other", 1));
+        ConcurrentMapData root = new ConcurrentMapData("root", mid, new ConcurrentMapData("sibling", 1));
+        AtomicInteger rootChanges = new AtomicInteger();
+        root.addValueListener((source, oldValue, newValue) -> rootChanges.incrementAndGet());
+        for (int i = 0; i < 5; i++) {
+            leaf.setValue(2 + i);
+            mid.getValue();
+        }
+        assertEquals(5, rootChanges.get());
+        assertEquals(8, root.getValue(), 0);
+    }
+
+    /**
+     * Test of concurrent updates of the leaves while the values are read.
+     *
+     * @throws Exception if a producer failed
+     */
+    @Test(timeout = 30000)
+    public void testConcurrentUpdates() throws Exception {
+        int producers = 8;
+        int updates = 20_000;
+        List<ConcurrentMapData> leaves = new ArrayList<>();
+        List<MapData> nodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            List<MapData> children = new ArrayList<>();
+            for (int j = 0; j < 10; j++) {
+                ConcurrentMapData leaf = new ConcurrentMapData("leaf" + i + "_" + j, 0);
+                leaves.add(leaf);
+                children.add(leaf);
+            }
+            nodes.add(new ConcurrentMapData("node" + i, children));
+        }
+        ConcurrentMapData root = new ConcurrentMapData("root", nodes);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicBoolean decreased = new AtomicBoolean(false);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int seed = p;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < updates; i++) {
+                        // integral amounts keep the sums exact
+                        leaves.get((seed * 31 + i * 7) % leaves.size()).addValue(1);
+                    }
+                    return null;
+                }));
+            }
+            Thread reader = new Thread(() -> {
+                double previous = 0;
+                while (!done.get()) {
+                    double value = root.getValue();
+                    // the leaves only grow, so does every read of the root
+                    if (value < previous) {
+                        decreased.set(true);
+                    }
+                    previous = value;
+                }
+            });
+            reader.start();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            done.set(true);
+            reader.join();
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        assertFalse(decreased.get());
+        assertEquals((double) producers * updates, root.getValue(), 0);
+        double sum = 0;
+        for (MapData node : nodes) {
+            sum += node.getValue();
+        }
+        assertEquals(root.getValue(), sum, 0);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost of the layout algorithms. The mean and worst aspect ratios
+ * of the items, the layout quality, are printed once per trial.
+ *
+ * Run with: mvn -P Benchmark test-compile exec:exec
+ * -Dbenchmark=LayoutAlgorithmBenchmark
+ *
+ * @author ahamon
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutAlgorithmBenchmark {
+
+    private static final double WIDTH = 1200;
+    private static final double HEIGHT = 800;
+    private static final double MIN_TILE_AREA = 64;
+
+    @Param({"squarified", "incrementalSquarified", "topK", "sliceAndDice", "strip", "pivot"})
+    private String algorithm;
+
+    @Param({"100", "1000", "10000", "20000"})
+    private int itemCount;
+
+    private MapItem[] items;
+    private Rect bounds;
+    private TreeMapLayout layout;
+    private LayoutResult result;
+    private double tickDelta;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(itemCount);
+        double[] values = new double[itemCount];
+        double total = 0;
+        for (int i = 0; i < itemCount; i++) {
+            // long-tailed distribution, close to real data sets
+            values[i] = Math.exp(random.nextGaussian() * 2);
+            total += values[i];
+        }
+        items = new MapItem[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            items[i] = new TestMapItem(values[i] / total * WIDTH * HEIGHT);
+        }
+        bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        layout = new TreeMapLayout(createAlgorithm(algorithm));
+        result = new LayoutResult();
+        tickDelta = items[0].getSize() * 1e-9;
+    }
+
+    @TearDown(Level.Trial)
+    public void printQuality() {
+        double mean = 0;
+        double worst = 0;
+        // aggregated items have no bounds of their own
+        int laidOutCount = result.size() - result.getAggregatedCount();
+        for (int i = 0; i < result.size(); i++) {
+            if (!result.isAggregated(i)) {
+                double aspect = result.aspectRatio(i);
+                mean += aspect / laidOutCount;
+                worst = Math.max(worst, aspect);
+            }
+        }
+        System.out.printf("%n%s (%d items, %d laid out): mean aspect ratio %.2f, worst %.2f%n", algorithm, itemCount, laidOutCount, mean, worst);
+    }
+
+    @Benchmark
+    public LayoutResult layout() {
+        // a fresh order, as when the values changed
+        result.resetOrder();
+        return layout.layout(items, bounds, result);
+    }
+
+    @Benchmark
+    public LayoutResult tick() {
+        // moves a little size between two items, as ticking values do
+        tickDelta = -tickDelta;
+        ((TestMapItem) items[0]).setSize(items[0].getSize() + tickDelta);
+        ((TestMapItem) items[1]).setSize(items[1].getSize() - tickDelta);
+        return layout.layout(items, bounds, result);
+    }
+
+    private static LayoutAlgorithm createAlgorithm(String name) {
+        switch (name) {
+            case "squarified":
+                return new SquarifiedLayout();
+            case "incrementalSquarified":
+                return new IncrementalSquarifiedLayout();
+            case "topK":
+                return new TopKLayout(new SquarifiedLayout(), MIN_TILE_AREA);
+            case "sliceAndDice":
+                return new SliceAndDiceLayout();
+            case "strip":
+                return new StripLayout();
+            case "pivot":
+                return new PivotLayout();
+            default:
+                throw new IllegalArgumentException("Unknown layout algorithm: " + name);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import com.github.ptitnoony.components.fxtreemap.canvasimpl.CanvasMapModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ahamon
+ */
+public class LayoutAlgorithmTest {
+
+    private static final double WIDTH = 1200;
+    private static final double HEIGHT = 800;
+    private static final double TOLERANCE = 1e-6;
+
+    private static final LayoutAlgorithm[] ALGORITHMS = {
+        new SquarifiedLayout(), new SliceAndDiceLayout(), new StripLayout(), new PivotLayout(), new IncrementalSquarifiedLayout()
+    };
+
+    /**
+     * Test of layout method, of all the LayoutAlgorithm implementations: the
+     * items fill the bounds with their areas, without overlapping.
+     */
+    @Test
+    public void testLayoutTilesBounds() {
+        for (LayoutAlgorithm algorithm : ALGORITHMS) {
+            for (int count : new int[]{1, 2, 7, 200}) {
+                for (Rect bounds : new Rect[]{new Rect(0, 0, WIDTH, HEIGHT), new Rect(10, 20, HEIGHT, WIDTH)}) {
+                    MapItem[] items = createItems(new Random(count), count, bounds);
+                    new TreeMapLayout(algorithm).layout(items, bounds, new LayoutResult());
+                    assertTiling(algorithm, items, bounds);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of layout method, of the ordered LayoutAlgorithm implementations:
+     * the results do not depend on a sort of the items.
+     */
+    @Test
+    public void testOrderedLayouts() {
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        MapItem[] items = createItems(new Random(3), 50, bounds);
+        LayoutResult result = new LayoutResult();
+        for (LayoutAlgorithm algorithm : new LayoutAlgorithm[]{new SliceAndDiceLayout(), new StripLayout(), new PivotLayout()}) {
+            new TreeMapLayout(algorithm).layout(items, bounds, result);
+            for (int rank = 0; rank < items.length; rank++) {
+                assertEquals(rank, result.getOrder(rank));
+            }
+            assertEquals(0, result.getFullSortCount());
+        }
+        // slice and dice keeps the items side by side along the longest side
+        new TreeMapLayout(new SliceAndDiceLayout()).layout(items, bounds, result);
+        for (int i = 1; i < items.length; i++) {
+            assertEquals(items[i - 1].getBounds().getX() + items[i - 1].getBounds().getWidth(), items[i].getBounds().getX(), TOLERANCE);
+        }
+    }
+
+    /**
+     * Test of layout method, of the LayoutAlgorithm implementations: squarify
+     * and pivot give squarer items than slice and dice.
+     */
+    @Test
+    public void testAspectRatios() {
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        MapItem[] items = createItems(new Random(5), 500, bounds);
+        LayoutResult result = new LayoutResult();
+        double[] meanAspects = new double[ALGORITHMS.length];
+        for (int a = 0; a < ALGORITHMS.length; a++) {
+            new TreeMapLayout(ALGORITHMS[a]).layout(items, bounds, result);
+            for (int i = 0; i < result.size(); i++) {
+                meanAspects[a] += result.aspectRatio(i) / result.size();
+            }
+        }
+        assertTrue(meanAspects[0] < meanAspects[1]);
+        assertTrue(meanAspects[2] < meanAspects[1]);
+        assertTrue(meanAspects[3] < meanAspects[1]);
+    }
+
+    /**
+     * Test of layout method, of class IncrementalSquarifiedLayout: the rows
+     * before the changed items are kept, and the layout still tiles the
+     * bounds.
+     */
+    @Test
+    public void testIncrementalSquarifiedLayout() {
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        MapItem[] items = createItems(new Random(9), 2000, bounds);
+        LayoutAlgorithm algorithm = new IncrementalSquarifiedLayout();
+        TreeMapLayout layout = new TreeMapLayout(algorithm);
+        LayoutResult result = new LayoutResult();
+        layout.layout(items, bounds, result);
+        LayoutResult squarified = new LayoutResult();
+        new TreeMapLayout(new SquarifiedLayout()).layout(items, bounds, squarified);
+        for (int i = 0; i < items.length; i++) {
+            assertEquals(squarified.getX(i), result.getX(i), 0);
+            assertEquals(squarified.getWidth(i), result.getWidth(i), 0);
+        }
+        int rowCount = result.getRows().size();
+        // moves some size between two neighbours, keeping the order
+        int rank = 1500;
+        TestMapItem bigger = (TestMapItem) items[result.getOrder(rank)];
+        TestMapItem smaller = (TestMapItem) items[result.getOrder(rank + 1)];
+        double delta = (smaller.getSize() - items[result.getOrder(rank + 2)].getSize()) / 2;
+        bigger.setSize(bigger.getSize() + delta);
+        smaller.setSize(smaller.getSize() - delta);
+        double[] previousX = new double[items.length];
+        for (int i = 0; i < items.length; i++) {
+            previousX[i] = result.getX(i);
+        }
+        int fullSorts = result.getFullSortCount();
+        layout.layout(items, bounds, result);
+        assertEquals(fullSorts, result.getFullSortCount());
+        assertEquals(rowCount, result.getRows().size());
+        for (int r = 0; r < 1000; r++) {
+            assertEquals(previousX[result.getOrder(r)], result.getX(result.getOrder(r)), 0);
+        }
+        assertTiling(algorithm, items, bounds);
+        // ticking values, the quality is kept within the tolerance
+        Random random = new Random(11);
+        for (int tick = 0; tick < 50; tick++) {
+            for (int i = 0; i < 20; i++) {
+                TestMapItem item = (TestMapItem) items[random.nextInt(items.length)];
+                item.setSize(item.getSize() * (0.5 + random.nextDouble()));
+            }
+            double total = TreeMapLayout.totalSize(items);
+            for (MapItem item : items) {
+                ((TestMapItem) item).setSize(item.getSize() / total * WIDTH * HEIGHT);
+            }
+            layout.layout(items, bounds, result);
+            assertTiling(algorithm, items, bounds);
+        }
+    }
+
+    /**
+     * Test of layout method, of class IncrementalSquarifiedLayout, through the
+     * layout of a model: the sizes are scaled to the bounds area, so the rows
+     * are only kept as they are when the total value does not change.
+     */
+    @Test
+    public void testIncrementalSquarifiedLayoutOfModel() {
+        // distinct even values, so that moving 1 keeps the order and the
+        // sums stay exact
+        List<MapData> children = new ArrayList<>();
+        for (int i = 1; i <= 2000; i++) {
+            children.add(new ConcreteMapData(2 * i));
+        }
+        Collections.shuffle(children, new Random(13));
+        CanvasMapModel model = new CanvasMapModel(new ConcreteMapData("root", children), WIDTH, HEIGHT);
+        MapItem[] items = model.getItems().toArray(new MapItem[0]);
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        LayoutAlgorithm algorithm = new IncrementalSquarifiedLayout();
+        TreeMapLayout layout = new TreeMapLayout(algorithm);
+        LayoutResult result = new LayoutResult();
+        LayoutCache cache = new LayoutCache();
+        layout.layout(model, bounds, result, cache);
+        int rowCount = result.getRows().size();
+        // the total is kept: the rows before the changed items are kept
+        int rank = 1500;
+        MapData bigger = items[result.getOrder(rank)].getData();
+        MapData smaller = items[result.getOrder(rank + 1)].getData();
+        bigger.setValue(bigger.getValue() + 1);
+        smaller.setValue(smaller.getValue() - 1);
+        double[] previousX = new double[items.length];
+        double[] previousWidth = new double[items.length];
+        for (int i = 0; i < items.length; i++) {
+            previousX[i] = result.getX(i);
+            previousWidth[i] = result.getWidth(i);
+        }
+        layout.layout(model, bounds, result, cache);
+        assertEquals(rowCount, result.getRows().size());
+        for (int r = 0; r < 1000; r++) {
+            int index = result.getOrder(r);
+            assertEquals(previousX[index], result.getX(index), 0);
+            assertEquals(previousWidth[index], result.getWidth(index), 0);
+        }
+        assertTiling(algorithm, items, bounds);
+        // the total changes: every size changes, all the rows are resized
+        // while keeping their items
+        bigger.setValue(bigger.getValue() + 1);
+        int largest = result.getOrder(0);
+        double largestWidth = result.getWidth(largest);
+        double largestHeight = result.getHeight(largest);
+        layout.layout(model, bounds, result, cache);
+        assertEquals(rowCount, result.getRows().size());
+        assertNotEquals(largestWidth * largestHeight, result.getWidth(largest) * result.getHeight(largest), 0);
+        assertTiling(algorithm, items, bounds);
+    }
+
+    /**
+     * Test of layout method, of class AggregatingLayout: the items below the
+     * minimum area share the aggregate tile, the others tile the remaining
+     * area.
+     */
+    @Test
+    public void testAggregatingLayout() {
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        MapItem[] items = createItems(new Random(13), 5000, bounds);
+        double minArea = 50;
+        AggregatingLayout algorithm = new AggregatingLayout(new SquarifiedLayout(), minArea);
+        LayoutResult result = new TreeMapLayout(algorithm).layout(items, bounds, new LayoutResult());
+        int aggregatedCount = 0;
+        double aggregatedSize = 0;
+        double area = 0;
+        for (int i = 0; i < items.length; i++) {
+            Rect r = items[i].getBounds();
+            if (items[i].getSize() < minArea) {
+                assertTrue(result.isAggregated(i));
+                assertEquals(0, r.getWidth() * r.getHeight(), 0);
+                aggregatedCount++;
+                aggregatedSize += items[i].getSize();
+            } else {
+                assertFalse(result.isAggregated(i));
+                assertEquals(items[i].getSize(), r.getWidth() * r.getHeight(), TOLERANCE * items[i].getSize());
+                area += r.getWidth() * r.getHeight();
+            }
+        }
+        assertTrue(aggregatedCount > 1);
+        assertEquals(aggregatedCount, result.getAggregatedCount());
+        double aggregateArea = result.getAggregateWidth() * result.getAggregateHeight();
+        assertEquals(aggregatedSize, aggregateArea, TOLERANCE * aggregatedSize);
+        assertEquals(WIDTH * HEIGHT, area + aggregateArea, TOLERANCE * WIDTH * HEIGHT);
+        // without small items, the layout is the one of the decorated algorithm
+        LayoutResult plain = new TreeMapLayout(new AggregatingLayout(new SquarifiedLayout(), 0)).layout(items, bounds, result);
+        assertEquals(0, plain.getAggregatedCount());
+        assertTiling(algorithm, items, bounds);
+    }
+
+    /**
+     * Test of layout method, of class TopKLayout: only the largest items are
+     * laid out, the other ones sharing the aggregate tile.
+     */
+    @Test
+    public void testTopKLayout() {
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        MapItem[] items = createItems(new Random(15), 20000, bounds);
+        TopKLayout algorithm = new TopKLayout(new SquarifiedLayout(), WIDTH * HEIGHT / 100);
+        int k = algorithm.getMaxItemCount(WIDTH, HEIGHT);
+        assertEquals(99, k);
+        LayoutResult result = new TreeMapLayout(algorithm).layout(items, bounds, new LayoutResult());
+        assertEquals(items.length - k, result.getAggregatedCount());
+        LayoutResult sorted = new LayoutResult();
+        sorted.load(items, 0, items.length - 1);
+        sorted.sortDescending();
+        double area = result.getAggregateWidth() * result.getAggregateHeight();
+        for (int rank = 0; rank < items.length; rank++) {
+            int i = sorted.getOrder(rank);
+            Rect r = items[i].getBounds();
+            assertEquals(rank >= k, result.isAggregated(i));
+            assertEquals(rank < k ? items[i].getSize() : 0, r.getWidth() * r.getHeight(), TOLERANCE * items[i].getSize());
+            area += r.getWidth() * r.getHeight();
+        }
+        assertEquals(WIDTH * HEIGHT, area, TOLERANCE * WIDTH * HEIGHT);
+        // fewer items than tiles are all laid out
+        MapItem[] fewItems = createItems(new Random(15), k + 1, bounds);
+        assertEquals(0, new TreeMapLayout(algorithm).layout(fewItems, bounds, result).getAggregatedCount());
+        assertTiling(algorithm, fewItems, bounds);
+    }
+
+    /**
+     * Test of layout method, of class TopKLayout: with equal sizes, only K
+     * items are laid out, the first ones in index order.
+     */
+    @Test
+    public void testTopKLayoutEqualSizes() {
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        int count = 100_000;
+        MapItem[] items = new MapItem[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = new TestMapItem(WIDTH * HEIGHT / count);
+        }
+        TopKLayout algorithm = new TopKLayout(new SquarifiedLayout(), 64);
+        int k = algorithm.getMaxItemCount(WIDTH, HEIGHT);
+        assertEquals(14999, k);
+        LayoutResult result = new TreeMapLayout(algorithm).layout(items, bounds, new LayoutResult());
+        assertEquals(count - k, result.getAggregatedCount());
+        double area = result.getAggregateWidth() * result.getAggregateHeight();
+        assertEquals((count - k) * WIDTH * HEIGHT / count, area, TOLERANCE * WIDTH * HEIGHT);
+        for (int i = 0; i < count; i++) {
+            Rect r = items[i].getBounds();
+            assertEquals(i >= k, result.isAggregated(i));
+            assertEquals(i < k ? items[i].getSize() : 0, r.getWidth() * r.getHeight(), TOLERANCE * items[i].getSize());
+            area += r.getWidth() * r.getHeight();
+        }
+        assertEquals(WIDTH * HEIGHT, area, TOLERANCE * WIDTH * HEIGHT);
+    }
+
+    private static MapItem[] createItems(Random random, int count, Rect bounds) {
+        double[] values = new double[count];
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 2);
+            total += values[i];
+        }
+        MapItem[] items = new MapItem[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = new TestMapItem(values[i] / total * bounds.getWidth() * bounds.getHeight());
+        }
+        return items;
+    }
+
+    private static void assertTiling(LayoutAlgorithm algorithm, MapItem[] items, Rect bounds) {
+        String name = algorithm.getClass().getSimpleName();
+        double area = 0;
+        for (MapItem item : items) {
+            Rect r = item.getBounds();
+            assertEquals(name, item.getSize(), r.getWidth() * r.getHeight(), TOLERANCE * item.getSize() + TOLERANCE);
+            assertTrue(name, r.getX() >= bounds.getX() - TOLERANCE);
+            assertTrue(name, r.getY() >= bounds.getY() - TOLERANCE);
+            assertTrue(name, r.getX() + r.getWidth() <= bounds.getX() + bounds.getWidth() + TOLERANCE);
+            assertTrue(name, r.getY() + r.getHeight() <= bounds.getY() + bounds.getHeight() + TOLERANCE);
+            area += r.getWidth() * r.getHeight();
+        }
+        // items within the bounds and summing to its area can only overlap
+        // if some area is left empty
+        assertEquals(name, bounds.getWidth() * bounds.getHeight(), area, TOLERANCE * area);
+        for (int i = 0; i < items.length && items.length <= 10; i++) {
+            for (int j = i + 1; j < items.length; j++) {
+                Rect a = items[i].getBounds();
+                Rect b = items[j].getBounds();
+                double overlapW = Math.min(a.getX() + a.getWidth(), b.getX() + b.getWidth()) - Math.max(a.getX(), b.getX());
+                double overlapH = Math.min(a.getY() + a.getHeight(), b.getY() + b.getHeight()) - Math.max(a.getY(), b.getY());
+                assertFalse(name, overlapW > TOLERANCE && overlapH > TOLERANCE);
+            }
+        }
+    }
+}
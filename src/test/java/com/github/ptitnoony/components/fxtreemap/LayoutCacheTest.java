@@ -0,0 +1,216 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import com.github.ptitnoony.components.fxtreemap.canvasimpl.CanvasMapModel;
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ahamon
+ */
+public class LayoutCacheTest {
+
+    private static final double WIDTH = 1200;
+    private static final double HEIGHT = 800;
+
+    /**
+     * Test of restore and store methods, of class LayoutCache: an unchanged
+     * layout is restored with the same bounds, changes in the data or the size
+     * are not.
+     */
+    @Test
+    public void testHitsAndMisses() {
+        List<MapData> children = createChildren(new Random(7), 100);
+        ConcreteMapData root = new ConcreteMapData("root", children);
+        CanvasMapModel model = new CanvasMapModel(root, WIDTH, HEIGHT);
+        TreeMapLayout layout = new TreeMapLayout();
+        LayoutCache cache = new LayoutCache();
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        layout.layout(model, bounds, model.getLayoutResult(), cache);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        double[] expected = copyBounds(model);
+        // scramble the bounds to check they are restored
+        model.getItems().forEach(item -> item.setBounds(0, 0, 0, 0));
+        layout.layout(model, bounds, model.getLayoutResult(), cache);
+        assertEquals(1, cache.getHitCount());
+        assertArrayEquals(expected, copyBounds(model), 0);
+        // a translated bounds of the same size is a hit
+        layout.layout(model, new Rect(10, 20, WIDTH, HEIGHT), model.getLayoutResult(), cache);
+        assertEquals(2, cache.getHitCount());
+        assertEquals(expected[0] + 10, model.getItems().get(0).getBounds().getX(), 1e-9);
+        // value and size changes
+        children.get(3).setValue(children.get(3).getValue() * 2);
+        layout.layout(model, bounds, model.getLayoutResult(), cache);
+        assertEquals(2, cache.getMissCount());
+        model.setSize(WIDTH, HEIGHT / 2);
+        layout.layout(model, new Rect(0, 0, WIDTH, HEIGHT / 2), model.getLayoutResult(), cache);
+        assertEquals(3, cache.getMissCount());
+        // another algorithm
+        new TreeMapLayout(new StripLayout()).layout(model, new Rect(0, 0, WIDTH, HEIGHT / 2), model.getLayoutResult(), cache);
+        assertEquals(4, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4, cache.size());
+    }
+
+    /**
+     * Test of store method, of class LayoutCache: the least recently used
+     * layout is evicted.
+     */
+    @Test
+    public void testEviction() {
+        ConcreteMapData root = new ConcreteMapData("root", createChildren(new Random(11), 20));
+        CanvasMapModel model = new CanvasMapModel(root, WIDTH, HEIGHT);
+        TreeMapLayout layout = new TreeMapLayout();
+        LayoutCache cache = new LayoutCache(2);
+        layout.layout(model, new Rect(0, 0, 100, 100), model.getLayoutResult(), cache);
+        layout.layout(model, new Rect(0, 0, 200, 100), model.getLayoutResult(), cache);
+        layout.layout(model, new Rect(0, 0, 100, 100), model.getLayoutResult(), cache);
+        layout.layout(model, new Rect(0, 0, 300, 100), model.getLayoutResult(), cache);
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+        layout.layout(model, new Rect(0, 0, 100, 100), model.getLayoutResult(), cache);
+        assertEquals(2, cache.getHitCount());
+        layout.layout(model, new Rect(0, 0, 200, 100), model.getLayoutResult(), cache);
+        assertEquals(4, cache.getMissCount());
+    }
+
+    /**
+     * Test of restore method, of class LayoutCache: data without version are
+     * always laid out.
+     */
+    @Test
+    public void testUnversionedData() {
+        ConcreteMapData root = new ConcreteMapData("root", createChildren(new Random(13), 20)) {
+            @Override
+            public long getVersion() {
+                return NO_VERSION;
+            }
+        };
+        CanvasMapModel model = new CanvasMapModel(root, WIDTH, HEIGHT);
+        LayoutCache cache = new LayoutCache();
+        new TreeMapLayout().layout(model, new Rect(0, 0, WIDTH, HEIGHT), model.getLayoutResult(), cache);
+        new TreeMapLayout().layout(model, new Rect(0, 0, WIDTH, HEIGHT), model.getLayoutResult(), cache);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Test of store method, of class LayoutCache: a layout which sizes were
+     * loaded while the data changed is not restored for the changed data.
+     */
+    @Test
+    public void testChangeWhileLoading() {
+        List<MapData> children = createChildren(new Random(17), 10);
+        ConcreteMapData root = new ConcreteMapData("root", children);
+        AtomicBoolean changed = new AtomicBoolean();
+        List<TestMapItem> items = new ArrayList<>();
+        for (MapData child : children) {
+            items.add(new TestMapItem(child.getValue()) {
+                @Override
+                public double getSize() {
+                    // a change made by another thread while the sizes are loaded
+                    if (changed.compareAndSet(false, true)) {
+                        children.get(0).setValue(children.get(0).getValue() + 1);
+                    }
+                    return super.getSize();
+                }
+            });
+        }
+        MapModel model = new MapModel() {
+            @Override
+            public MapData getData() {
+                return root;
+            }
+
+            @Override
+            public List<? extends MapItem> getItems() {
+                return items;
+            }
+
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+            }
+        };
+        TreeMapLayout layout = new TreeMapLayout();
+        LayoutCache cache = new LayoutCache();
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        layout.layout(model, bounds, new LayoutResult(), cache);
+        assertTrue(changed.get());
+        layout.layout(model, bounds, new LayoutResult(), cache);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        layout.layout(model, bounds, new LayoutResult(), cache);
+        assertEquals(1, cache.getHitCount());
+    }
+
+    private static List<MapData> createChildren(Random random, int count) {
+        List<MapData> children = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            children.add(new ConcreteMapData(Math.exp(random.nextGaussian() * 2)));
+        }
+        return children;
+    }
+
+    /**
+     * Test of restore method, of class LayoutCache: the aggregate tile of an
+     * aggregating layout is restored along with the items bounds.
+     */
+    @Test
+    public void testRestoreAggregate() {
+        ConcreteMapData root = new ConcreteMapData("root", new ConcreteMapData(1000), new ConcreteMapData(1), new ConcreteMapData(2));
+        CanvasMapModel model = new CanvasMapModel(root, WIDTH, HEIGHT);
+        TreeMapLayout layout = new TreeMapLayout(new AggregatingLayout(new SquarifiedLayout(), WIDTH * HEIGHT / 100));
+        LayoutCache cache = new LayoutCache();
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        layout.layout(model, bounds, model.getLayoutResult(), cache);
+        LayoutResult restored = layout.layout(model, bounds, new LayoutResult(), cache);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, restored.getAggregatedCount());
+        assertFalse(restored.isAggregated(0));
+        assertTrue(restored.isAggregated(1));
+        assertEquals(3 * WIDTH * HEIGHT / 1003, restored.getAggregateWidth() * restored.getAggregateHeight(), 1e-6);
+    }
+
+    private static double[] copyBounds(MapModel model) {
+        List<? extends MapItem> items = model.getItems();
+        double[] bounds = new double[4 * items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            Rect r = items.get(i).getBounds();
+            bounds[4 * i] = r.getX();
+            bounds[4 * i + 1] = r.getY();
+            bounds[4 * i + 2] = r.getWidth();
+            bounds[4 * i + 3] = r.getHeight();
+        }
+        return bounds;
+    }
+}
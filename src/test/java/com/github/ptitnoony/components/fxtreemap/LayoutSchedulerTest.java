@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ahamon
+ */
+public class LayoutSchedulerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Test of pulse method, of class LayoutScheduler: without quiet period,
+     * requests are coalesced into a single layout on the next pulse.
+     */
+    @Test
+    public void testOneLayoutPerPulse() {
+        AtomicInteger layouts = new AtomicInteger();
+        LayoutScheduler scheduler = new LayoutScheduler(layouts::incrementAndGet, 0, 250);
+        assertFalse(scheduler.pulse(0));
+        assertTrue(scheduler.markRequested(1 * MS));
+        assertFalse(scheduler.markRequested(2 * MS));
+        assertFalse(scheduler.markRequested(3 * MS));
+        assertTrue(scheduler.pulse(16 * MS));
+        assertFalse(scheduler.pulse(32 * MS));
+        assertEquals(1, layouts.get());
+        assertFalse(scheduler.isPending());
+    }
+
+    /**
+     * Test of pulse method, of class LayoutScheduler: the layout waits for the
+     * quiet period, but no longer than the maximum latency.
+     */
+    @Test
+    public void testQuietPeriodAndMaxLatency() {
+        AtomicInteger layouts = new AtomicInteger();
+        LayoutScheduler scheduler = new LayoutScheduler(layouts::incrementAndGet, 100, 250);
+        scheduler.markRequested(0);
+        assertFalse(scheduler.pulse(50 * MS));
+        assertTrue(scheduler.pulse(100 * MS));
+        // a continuous resize, requesting every frame
+        long now = 200 * MS;
+        scheduler.markRequested(now);
+        int pulses = 0;
+        while (layouts.get() == 1) {
+            now += 16 * MS;
+            scheduler.markRequested(now);
+            scheduler.pulse(now);
+            pulses++;
+        }
+        assertEquals(250 / 16 + 1, pulses);
+        // the layout ran once the maximum latency elapsed
+        assertTrue(now - 200 * MS >= 250 * MS);
+        assertFalse(scheduler.isPending());
+    }
+
+    /**
+     * Test of pulse method, of class LayoutScheduler: a request made by the
+     * layout itself schedules another layout.
+     */
+    @Test
+    public void testRequestDuringLayout() {
+        AtomicInteger layouts = new AtomicInteger();
+        LayoutScheduler[] scheduler = new LayoutScheduler[1];
+        scheduler[0] = new LayoutScheduler(() -> {
+            if (layouts.incrementAndGet() == 1) {
+                scheduler[0].markRequested(20 * MS);
+            }
+        }, 0, 250);
+        scheduler[0].markRequested(0);
+        assertTrue(scheduler[0].pulse(16 * MS));
+        assertTrue(scheduler[0].isPending());
+        assertTrue(scheduler[0].pulse(32 * MS));
+        assertEquals(2, layouts.get());
+    }
+
+    /**
+     * Test of setMaxLatency method, of class LayoutScheduler.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaxLatency() {
+        new LayoutScheduler(() -> {
+        }, 0, 250).setMaxLatency(-1);
+    }
+}
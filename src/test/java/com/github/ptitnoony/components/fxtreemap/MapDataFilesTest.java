@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ahamon
+ */
+public class MapDataFilesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of write and open methods, of class MapDataFiles: the opened
+     * hierarchy is the written one.
+     */
+    @Test
+    public void testWriteAndOpen() throws IOException {
+        MapData root = ColumnarMapDataStoreTest.createTree(new Random(3), 4, 5);
+        root.getChildrenData().get(0).setName("\u00e9t\u00e9");
+        Path path = folder.newFile("tree.fxtm").toPath();
+        MapDataFiles.write(root, path);
+        OffHeapMapDataStore store = MapDataFiles.open(path);
+        ColumnarMapDataStoreTest.assertSameHierarchy(root, store.getRoot());
+        ColumnarMapDataStoreTest.assertSums(store);
+        // changes stay in memory
+        MapData leaf = store.getData(store.getNodeCount() - 1);
+        leaf.setValue(leaf.getValue() + 1);
+        leaf.setName("changed");
+        ColumnarMapDataStoreTest.assertSameHierarchy(root, MapDataFiles.open(path).getRoot());
+        // a store can be written back
+        Path copy = folder.newFile("copy.fxtm").toPath();
+        MapDataFiles.write(store.getRoot(), copy);
+        assertEquals("changed", MapDataFiles.open(copy).getName(store.getNodeCount() - 1));
+    }
+
+    /**
+     * Test of write and open methods, of class MapDataFiles, on more nodes
+     * than the write buffers hold.
+     */
+    @Test
+    public void testLargeHierarchy() throws IOException {
+        ColumnarMapDataStore.Builder builder = new ColumnarMapDataStore.Builder();
+        builder.addNode(MapDataStore.NO_PARENT, "root", 0);
+        for (int i = 0; i < 100; i++) {
+            builder.addNode(0, "node " + i, 0);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            builder.addNode(1 + i % 100, "leaf " + i, i % 7);
+        }
+        ColumnarMapDataStore source = builder.build();
+        Path path = folder.newFile("large.fxtm").toPath();
+        MapDataFiles.write(source.getRoot(), path);
+        OffHeapMapDataStore store = MapDataFiles.open(path);
+        assertEquals(source.getNodeCount(), store.getNodeCount());
+        for (int node = 0; node < store.getNodeCount(); node++) {
+            assertEquals(source.getParent(node), store.getParent(node));
+            assertEquals(source.getFirstChild(node), store.getFirstChild(node));
+            assertEquals(source.getValue(node), store.getValue(node), 0);
+            assertEquals(source.getName(node), store.getName(node));
+        }
+    }
+
+    /**
+     * Test of open method, of class MapDataFiles, on a file of another
+     * format.
+     */
+    @Test(expected = IOException.class)
+    public void testOpenInvalidFile() throws IOException {
+        Path path = folder.newFile("invalid.fxtm").toPath();
+        Files.write(path, new byte[64]);
+        MapDataFiles.open(path);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ahamon
+ */
+public class NestedTreeMapLayoutTest {
+
+    private static final double WIDTH = 1200;
+    private static final double HEIGHT = 800;
+    private static final double TOLERANCE = 1e-6;
+
+    /**
+     * Test of layout method, of class NestedTreeMapLayout: every level fills
+     * its parent proportionally to the data values.
+     */
+    @Test
+    public void testLayoutWholeHierarchy() {
+        MapData root = createTree(new Random(17), 6, 4);
+        LayoutNode rootNode = new NestedTreeMapLayout().layout(root, new Rect(0, 0, WIDTH, HEIGHT));
+        assertSame(root, rootNode.getData());
+        assertEquals(6, assertNestedBounds(rootNode));
+    }
+
+    /**
+     * Test of layout method, of class NestedTreeMapLayout: levels below the
+     * given depth are not laid out.
+     */
+    @Test
+    public void testLayoutMaxDepth() {
+        MapData root = createTree(new Random(19), 6, 3);
+        LayoutNode rootNode = new NestedTreeMapLayout().layout(root, new Rect(0, 0, WIDTH, HEIGHT), 2, 0);
+        assertEquals(2, assertNestedBounds(rootNode));
+        LayoutNode firstLevel = new NestedTreeMapLayout().layout(root, new Rect(0, 0, WIDTH, HEIGHT), 1, 0);
+        // same bounds as a single level layout
+        List<TestMapItem> items = new ArrayList<>();
+        root.getChildrenData().forEach(d -> items.add(new TestMapItem(d.getValue() / root.getValue() * WIDTH * HEIGHT)));
+        new TreeMapLayout().layout(items, new Rect(0, 0, WIDTH, HEIGHT));
+        for (int i = 0; i < items.size(); i++) {
+            Rect expected = items.get(i).getBounds();
+            LayoutNode child = firstLevel.getChild(i);
+            assertEquals(expected.getX(), child.getX(), TOLERANCE);
+            assertEquals(expected.getY(), child.getY(), TOLERANCE);
+            assertEquals(expected.getWidth(), child.getWidth(), TOLERANCE);
+            assertEquals(expected.getHeight(), child.getHeight(), TOLERANCE);
+            assertEquals(0, child.getChildCount());
+        }
+    }
+
+    /**
+     * Test of layout method, of class NestedTreeMapLayout: laying out in
+     * parallel gives the same result as laying out on a single thread.
+     */
+    @Test
+    public void testParallelLayoutMatchesSequential() {
+        MapData root = createTree(new Random(23), 5, 6);
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(4);
+        try {
+            Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+            LayoutNode expected = new NestedTreeMapLayout(new TreeMapLayout(), singleThread).layout(root, bounds, Integer.MAX_VALUE, 2);
+            NestedTreeMapLayout sharedLayout = new NestedTreeMapLayout(new TreeMapLayout(), parallel);
+            for (int run = 0; run < 10; run++) {
+                assertSameLayout(expected, sharedLayout.layout(root, bounds, Integer.MAX_VALUE, 2));
+            }
+        } finally {
+            singleThread.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    private static MapData createTree(Random random, int depth, int maxChildren) {
+        if (depth == 0) {
+            return new ConcreteMapData(1 + random.nextInt(100));
+        }
+        int nbChildren = 1 + random.nextInt(maxChildren);
+        List<MapData> children = new ArrayList<>(nbChildren);
+        for (int i = 0; i < nbChildren; i++) {
+            children.add(createTree(random, depth - 1, maxChildren));
+        }
+        return new ConcreteMapData("node" + depth, children);
+    }
+
+    /**
+     * Checks that the children of each node share its area proportionally to
+     * their values and stay inside its bounds.
+     *
+     * @return the number of levels laid out below the given node
+     */
+    private static int assertNestedBounds(LayoutNode node) {
+        if (node.getChildCount() == 0) {
+            return 0;
+        }
+        double area = node.getWidth() * node.getHeight();
+        double total = node.getData().getValue();
+        int levels = 0;
+        for (LayoutNode child : node.getChildren()) {
+            assertEquals(node.getDepth() + 1, child.getDepth());
+            double expectedArea = child.getData().getValue() / total * area;
+            assertEquals(expectedArea, child.getWidth() * child.getHeight(), area * TOLERANCE);
+            assertTrue(child.getX() >= node.getX() - TOLERANCE);
+            assertTrue(child.getY() >= node.getY() - TOLERANCE);
+            assertTrue(child.getX() + child.getWidth() <= node.getX() + node.getWidth() + TOLERANCE);
+            assertTrue(child.getY() + child.getHeight() <= node.getY() + node.getHeight() + TOLERANCE);
+            levels = Math.max(levels, assertNestedBounds(child));
+        }
+        return levels + 1;
+    }
+
+    /**
+     * Test of layout method, of class NestedTreeMapLayout: the clean subtrees
+     * of the previous layout are reused.
+     */
+    @Test
+    public void testIncrementalLayout() {
+        ConcreteMapData a1 = new ConcreteMapData("a1", 10);
+        ConcreteMapData a2 = new ConcreteMapData("a2", 20);
+        ConcreteMapData a = new ConcreteMapData("a", a1, a2);
+        ConcreteMapData b = new ConcreteMapData("b", new ConcreteMapData("b1", 5), new ConcreteMapData("b2", 15));
+        ConcreteMapData root = new ConcreteMapData("root", a, b);
+        NestedTreeMapLayout layout = new NestedTreeMapLayout();
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        LayoutNode first = layout.layout(root, bounds, 2, 0);
+        assertFalse(first.isDirty());
+        assertSame(first, layout.layout(root, bounds, 2, 0, first));
+        // a keeps its value, only its subtree is laid out again
+        a1.setValue(20);
+        a2.setValue(10);
+        assertTrue(first.isDirty());
+        assertTrue(first.getChild(0).isDirty());
+        assertFalse(first.getChild(1).isDirty());
+        LayoutNode second = layout.layout(root, bounds, 2, 0, first);
+        assertNotSame(first.getChild(0), second.getChild(0));
+        assertSame(first.getChild(1), second.getChild(1));
+        assertSameLayout(layout.layout(root, bounds, 2, 0), second);
+        // a moved subtree is translated
+        LayoutNode moved = layout.layout(root, new Rect(10, 20, WIDTH, HEIGHT), 2, 0, second);
+        assertSameLayout(layout.layout(root, new Rect(10, 20, WIDTH, HEIGHT), 2, 0), moved);
+        // a structure change lays out the changed subtree again
+        b.addChildrenData(new ConcreteMapData("b3", 0));
+        assertTrue(second.getChild(1).isDirty());
+        LayoutNode third = layout.layout(root, bounds, 2, 0, second);
+        assertEquals(3, third.getChild(1).getChildCount());
+        assertSame(second.getChild(0), third.getChild(0));
+    }
+
+    /**
+     * Test of layout method, of class NestedTreeMapLayout: the clean subtrees
+     * of a PersistentMapData are reused, although each changed ancestor is
+     * laid out from a new snapshot.
+     */
+    @Test
+    public void testIncrementalLayoutOfSnapshots() {
+        ConcreteMapData a = new ConcreteMapData("a", new ConcreteMapData("a1", new ConcreteMapData("a11", 10), new ConcreteMapData("a12", 5)),
+                new ConcreteMapData("a2", new ConcreteMapData("a21", 20), new ConcreteMapData("a22", 5)));
+        ConcreteMapData b = new ConcreteMapData("b", new ConcreteMapData("b1", 5), new ConcreteMapData("b2", 15));
+        PersistentMapData root = PersistentMapData.copyOf(new ConcreteMapData("root", a, b));
+        NestedTreeMapLayout layout = new NestedTreeMapLayout();
+        Rect bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        LayoutNode first = layout.layout(root, bounds, 3, 0);
+        // a11 and a12 swap values, a1 keeps its value
+        MapData a1 = root.getChildrenData().get(0).getChildrenData().get(0);
+        a1.getChildrenData().get(0).setValue(5);
+        a1.getChildrenData().get(1).setValue(10);
+        LayoutNode second = layout.layout(root, bounds, 3, 0, first);
+        assertNotSame(first.getChild(0), second.getChild(0));
+        assertNotSame(first.getChild(0).getChild(0), second.getChild(0).getChild(0));
+        assertSame(first.getChild(0).getChild(1), second.getChild(0).getChild(1));
+        assertSame(first.getChild(1), second.getChild(1));
+        assertSameLayout(layout.layout(root.snapshot(), bounds, 3, 0), second);
+    }
+
+    private static void assertSameLayout(LayoutNode expected, LayoutNode actual) {
+        assertSame(expected.getData(), actual.getData());
+        assertEquals(expected.getX(), actual.getX(), 0);
+        assertEquals(expected.getY(), actual.getY(), 0);
+        assertEquals(expected.getWidth(), actual.getWidth(), 0);
+        assertEquals(expected.getHeight(), actual.getHeight(), 0);
+        assertEquals(expected.getChildCount(), actual.getChildCount());
+        for (int i = 0; i < expected.getChildCount(); i++) {
+            assertSameLayout(expected.getChild(i), actual.getChild(i));
+        }
+    }
+}
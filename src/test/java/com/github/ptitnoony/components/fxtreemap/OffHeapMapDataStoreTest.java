@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import com.github.ptitnoony.components.fxtreemap.canvasimpl.CanvasMapModel;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ahamon
+ */
+public class OffHeapMapDataStoreTest {
+
+    /**
+     * Test of copyOf method, of class OffHeapMapDataStore: the views have the
+     * same names, values and structure as the copied hierarchy.
+     */
+    @Test
+    public void testCopyOf() {
+        MapData root = ColumnarMapDataStoreTest.createTree(new Random(3), 4, 5);
+        OffHeapMapDataStore store = OffHeapMapDataStore.copyOf(root);
+        ColumnarMapDataStoreTest.assertSameHierarchy(root, store.getRoot());
+        ColumnarMapDataStoreTest.assertSums(store);
+        ColumnarMapDataStore columnarStore = ColumnarMapDataStore.copyOf(root);
+        ColumnarMapDataStoreTest.assertSameHierarchy(root, OffHeapMapDataStore.copyOf(columnarStore).getRoot());
+    }
+
+    /**
+     * Test of setValue and setName methods, of class OffHeapMapDataStore.
+     */
+    @Test
+    public void testSetValueAndName() {
+        OffHeapMapDataStore store = OffHeapMapDataStore.copyOf(ColumnarMapDataStoreTest.createTree(new Random(5), 3, 4));
+        MapData leaf = store.getData(store.getNodeCount() - 1);
+        double rootValue = store.getRoot().getValue();
+        leaf.setValue(leaf.getValue() + 5);
+        assertEquals(rootValue + 5, store.getRoot().getValue(), 1e-9);
+        ColumnarMapDataStoreTest.assertSums(store);
+        // names outgrowing the initial buffer
+        for (int node = 0; node < store.getNodeCount(); node++) {
+            store.getData(node).setName("n\u00f6de " + node);
+        }
+        for (int node = 0; node < store.getNodeCount(); node++) {
+            assertEquals("n\u00f6de " + node, store.getName(node));
+        }
+    }
+
+    /**
+     * Test of getChildrenData method, of class OffHeapMapDataStore: the views
+     * can be laid out like any other data.
+     */
+    @Test
+    public void testLayoutViews() {
+        OffHeapMapDataStore store = OffHeapMapDataStore.copyOf(ColumnarMapDataStoreTest.createTree(new Random(11), 2, 50));
+        CanvasMapModel model = new CanvasMapModel(store.getRoot(), 1200, 800);
+        new TreeMapLayout().layout(model, new Rect(0, 0, 1200, 800), model.getLayoutResult());
+        double totalArea = 0;
+        for (MapItem item : model.getItems()) {
+            totalArea += item.getBounds().getWidth() * item.getBounds().getHeight();
+        }
+        assertEquals(1200 * 800, totalArea, 1e-6 * totalArea);
+    }
+}
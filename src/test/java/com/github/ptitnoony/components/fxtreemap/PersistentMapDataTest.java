@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ahamon
+ */
+public class PersistentMapDataTest {
+
+    /**
+     * Test of copyOf method, of class PersistentMapData.
+     */
+    @Test
+    public void testCopyOf() {
+        MapData root = ColumnarMapDataStoreTest.createTree(new Random(3), 3, 4);
+        PersistentMapData instance = PersistentMapData.copyOf(root);
+        ColumnarMapDataStoreTest.assertSameHierarchy(root, instance);
+        ColumnarMapDataStoreTest.assertSameHierarchy(root, instance.snapshot());
+        assertEquals(instance.getChildrenData().get(0), instance.getChildrenData().get(0));
+    }
+
+    /**
+     * Test of snapshot method, of class PersistentMapData: snapshots are not
+     * affected by later changes and share the unchanged nodes.
+     */
+    @Test
+    public void testSnapshot() {
+        PersistentMapData instance = PersistentMapData.copyOf(new ConcreteMapData("root",
+                new ConcreteMapData("a", new ConcreteMapData("a1", 1), new ConcreteMapData("a2", 3)),
+                new ConcreteMapData("b", new ConcreteMapData("b1", 4))));
+        MapDataSnapshot snapshot = instance.snapshot();
+        assertSame(snapshot, instance.snapshot());
+        MapData a1 = instance.getChildrenData().get(0).getChildrenData().get(0);
+        a1.setValue(2);
+        MapDataSnapshot changed = instance.snapshot();
+        assertNotSame(snapshot, changed);
+        assertEquals(8, snapshot.getValue(), 0);
+        assertEquals(1, snapshot.getChild(0).getChild(0).getValue(), 0);
+        assertEquals(9, changed.getValue(), 0);
+        assertEquals(5, changed.getChild(0).getValue(), 0);
+        assertEquals(9, instance.getValue(), 0);
+        assertNotEquals(snapshot.getVersion(), changed.getVersion());
+        // only the path to the change is copied
+        assertSame(snapshot.getChild(1), changed.getChild(1));
+        assertSame(snapshot.getChild(0).getChild(1), changed.getChild(0).getChild(1));
+        // snapshots are immutable
+        changed.setValue(1);
+        assertEquals(9, changed.getValue(), 0);
+    }
+
+    /**
+     * Test of setValue method, of class PersistentMapData.
+     */
+    @Test
+    public void testSetValueWithChildren() {
+        PersistentMapData instance = PersistentMapData.copyOf(new ConcreteMapData("root",
+                new ConcreteMapData("a", 1), new ConcreteMapData("b", 3)));
+        instance.setValue(8);
+        assertEquals(8, instance.getValue(), 0);
+        assertEquals(2, instance.getChildrenData().get(0).getValue(), 0);
+        assertEquals(6, instance.getChildrenData().get(1).getValue(), 0);
+        instance.addChildrenData(new ConcreteMapData("c", 2));
+        assertEquals(10, instance.getValue(), 0);
+        assertEquals(3, instance.getChildrenData().size());
+        instance.getChildrenData().get(2).setName("d");
+        assertEquals("d", instance.snapshot().getChild(2).getName());
+    }
+
+    /**
+     * Test of addValueListener method, of class PersistentMapData.
+     */
+    @Test
+    public void testValueListener() {
+        PersistentMapData instance = PersistentMapData.copyOf(new ConcreteMapData("root",
+                new ConcreteMapData("a", 1), new ConcreteMapData("b", 3)));
+        List<double[]> changes = new ArrayList<>();
+        ValueListener listener = (source, oldValue, newValue) -> {
+            assertEquals(instance, source);
+            changes.add(new double[]{oldValue, newValue});
+        };
+        instance.addValueListener(listener);
+        instance.getChildrenData().get(1).setValue(5);
+        instance.getChildrenData().get(0).setName("c");
+        assertEquals(1, changes.size());
+        assertArrayEquals(new double[]{4, 6}, changes.get(0), 0);
+        instance.removeValueListener(listener);
+        instance.getChildrenData().get(1).setValue(1);
+        assertEquals(1, changes.size());
+    }
+
+    /**
+     * Test of the layout of a PersistentMapData, which reads its snapshot.
+     */
+    @Test
+    public void testNestedLayout() {
+        PersistentMapData instance = PersistentMapData.copyOf(ColumnarMapDataStoreTest.createTree(new Random(5), 3, 4));
+        LayoutNode rootNode = new NestedTreeMapLayout().layout(instance, new Rect(0, 0, 400, 300));
+        assertSame(instance.snapshot(), rootNode.getData());
+        double area = 0;
+        for (LayoutNode child : rootNode.getChildren()) {
+            area += child.getWidth() * child.getHeight();
+        }
+        assertEquals(400 * 300, area, 1e-6);
+    }
+
+    /**
+     * Test of concurrent updates, which are all applied.
+     *
+     * @throws Exception if a writer failed
+     */
+    @Test(timeout = 30000)
+    public void testConcurrentUpdates() throws Exception {
+        List<MapData> leaves = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            leaves.add(new ConcreteMapData("leaf" + i, 0));
+        }
+        PersistentMapData instance = PersistentMapData.copyOf(new ConcreteMapData("root", leaves));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                MapData leaf = instance.getChildrenData().get(i);
+                int value = i + 1;
+                futures.add(executor.submit(() -> {
+                    for (int j = 1; j <= 1000; j++) {
+                        leaf.setValue(j * value);
+                        // every snapshot sums consistently
+                        MapDataSnapshot snapshot = instance.snapshot();
+                        double sum = 0;
+                        for (MapData child : snapshot.getChildrenData()) {
+                            sum += child.getValue();
+                        }
+                        assertEquals(sum, snapshot.getValue(), 0);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        assertEquals(1000 * 36, instance.getValue(), 0);
+    }
+}
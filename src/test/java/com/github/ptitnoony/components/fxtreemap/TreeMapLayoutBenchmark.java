@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the squarified layout with the original implementation.
+ *
+ * Run with: mvn -P Benchmark test-compile exec:exec
+ * -Dbenchmark=TreeMapLayoutBenchmark
+ *
+ * @author ahamon
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeMapLayoutBenchmark {
+
+    private static final double WIDTH = 1200;
+    private static final double HEIGHT = 800;
+
+    @Param({"100", "1000", "10000"})
+    private int itemCount;
+
+    private List<MapItem> items;
+    private Rect bounds;
+    private TreeMapLayout layout;
+    private LayoutResult result;
+    private LegacyTreeMapLayout legacyLayout;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(itemCount);
+        double[] values = new double[itemCount];
+        double total = 0;
+        for (int i = 0; i < itemCount; i++) {
+            // long-tailed distribution, close to real data sets
+            values[i] = Math.exp(random.nextGaussian() * 2);
+            total += values[i];
+        }
+        items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new TestMapItem(values[i] / total * WIDTH * HEIGHT));
+        }
+        bounds = new Rect(0, 0, WIDTH, HEIGHT);
+        layout = new TreeMapLayout();
+        result = new LayoutResult();
+        legacyLayout = new LegacyTreeMapLayout();
+    }
+
+    @Benchmark
+    public List<MapItem> squarify() {
+        layout.layout(items, bounds);
+        return items;
+    }
+
+    @Benchmark
+    public LayoutResult squarifyReusingOrder() {
+        // re-layout of an unchanged level, as during a resize
+        return layout.layout(items, bounds, result);
+    }
+
+    @Benchmark
+    public List<MapItem> legacySquarify() {
+        legacyLayout.layout(items, bounds);
+        return items;
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Arnaud Hamon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ptitnoony.components.fxtreemap;
+
+import com.github.ptitnoony.components.fxtreemap.canvasimpl.CanvasMapModel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ahamon
+ */
+public class TreeMapLayoutTest {
+
+    private static final double WIDTH = 1200;
+    private static final double HEIGHT = 800;
+    private static final double AREA_TOLERANCE = 1e-6;
+
+    /**
+     * Test of layout method, of class TreeMapLayout: items fill the bounds
+     * with their own area.
+     */
+    @Test
+    public void testLayoutPreservesAreas() {
+        List<TestMapItem> items = createItems(500, new Random(42));
+        new TreeMapLayout().layout(items, new Rect(0, 0, WIDTH, HEIGHT));
+        double totalArea = 0;
+        for (TestMapItem item : items) {
+            Rect bounds = item.getBounds();
+            double area = bounds.getWidth() * bounds.getHeight();
+            assertEquals(item.getSize(), area, item.getSize() * AREA_TOLERANCE);
+            assertTrue(bounds.getX() >= -AREA_TOLERANCE && bounds.getX() + bounds.getWidth() <= WIDTH + AREA_TOLERANCE);
+            assertTrue(bounds.getY() >= -AREA_TOLERANCE && bounds.getY() + bounds.getHeight() <= HEIGHT + AREA_TOLERANCE);
+            totalArea += area;
+        }
+        assertEquals(WIDTH * HEIGHT, totalArea, WIDTH * HEIGHT * AREA_TOLERANCE);
+    }
+
+    /**
+     * Test of layout method, of class TreeMapLayout: bounds are identical to
+     * the original implementation.
+     */
+    @Test
+    public void testLayoutMatchesLegacy() {
+        Random random = new Random(7);
+        for (int n = 0; n < 200; n++) {
+            List<TestMapItem> items = createItems(n, random);
+            List<TestMapItem> legacyItems = copy(items);
+            new TreeMapLayout().layout(items, new Rect(0, 0, WIDTH, HEIGHT));
+            new LegacyTreeMapLayout().layout(legacyItems, new Rect(0, 0, WIDTH, HEIGHT));
+            for (int i = 0; i < n; i++) {
+                assertSameBounds(legacyItems.get(i).getBounds(), items.get(i).getBounds());
+            }
+        }
+    }
+
+    /**
+     * Test of layout method, of class TreeMapLayout: a single instance is
+     * shared by many threads laying out different levels at the same time.
+     *
+     * @throws Exception if a layout task fails
+     */
+    @Test
+    public void testConcurrentLayouts() throws Exception {
+        final int nbLevels = 16;
+        final int nbRuns = 200;
+        TreeMapLayout sharedLayout = new TreeMapLayout();
+        Random random = new Random(1);
+        List<List<TestMapItem>> levels = new ArrayList<>();
+        List<List<TestMapItem>> references = new ArrayList<>();
+        for (int i = 0; i < nbLevels; i++) {
+            List<TestMapItem> level = createItems(50 + random.nextInt(2000), random);
+            List<TestMapItem> reference = copy(level);
+            new TreeMapLayout().layout(reference, new Rect(0, 0, WIDTH, HEIGHT));
+            levels.add(level);
+            references.add(reference);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < nbLevels; i++) {
+                final List<TestMapItem> level = levels.get(i);
+                final List<TestMapItem> reference = references.get(i);
+                tasks.add(() -> {
+                    LayoutResult result = new LayoutResult();
+                    for (int run = 0; run < nbRuns; run++) {
+                        sharedLayout.layout(level, new Rect(0, 0, WIDTH, HEIGHT), result);
+                        for (int k = 0; k < level.size(); k++) {
+                            assertSameBounds(reference.get(k).getBounds(), level.get(k).getBounds());
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test of layout method, of class TreeMapLayout: the order of a previous
+     * layout is reused and repaired instead of sorting the items again.
+     */
+    @Test
+    public void testLayoutReusesSortedOrder() {
+        Random random = new Random(5);
+        List<TestMapItem> items = createItems(5000, random);
+        TreeMapLayout layout = new TreeMapLayout();
+        LayoutResult result = new LayoutResult();
+        layout.layout(items, new Rect(0, 0, WIDTH, HEIGHT), result);
+        assertEquals(1, result.getFullSortCount());
+        // resize
+        layout.layout(items, new Rect(0, 0, WIDTH / 2, HEIGHT), result);
+        assertEquals(1, result.getFullSortCount());
+        // a few values ticking
+        for (int i = 0; i < 10; i++) {
+            TestMapItem item = items.get(random.nextInt(items.size()));
+            item.setSize(item.getSize() * (0.5 + random.nextDouble()));
+        }
+        layout.layout(items, new Rect(0, 0, WIDTH, HEIGHT), result);
+        assertEquals(1, result.getFullSortCount());
+        List<TestMapItem> reference = copy(items);
+        new TreeMapLayout().layout(reference, new Rect(0, 0, WIDTH, HEIGHT));
+        for (int i = 0; i < items.size(); i++) {
+            assertSameBounds(reference.get(i).getBounds(), items.get(i).getBounds());
+        }
+        // all the values changing
+        items.forEach(item -> item.setSize(random.nextDouble()));
+        layout.layout(items, new Rect(0, 0, WIDTH, HEIGHT), result);
+        assertEquals(2, result.getFullSortCount());
+        for (int rank = 1; rank < result.size(); rank++) {
+            assertTrue(result.getSize(result.getOrder(rank - 1)) >= result.getSize(result.getOrder(rank)));
+        }
+    }
+
+    /**
+     * Test of layout method, of class TreeMapLayout: copying a 100k items
+     * level stays linear, whatever the kind of list holding the items.
+     */
+    @Test(timeout = 20000)
+    public void testLayoutLinkedListItems() {
+        final int nbItems = 100_000;
+        List<TestMapItem> items = new LinkedList<>(createItems(nbItems, new Random(9)));
+        TreeMapLayout layout = new TreeMapLayout();
+        LayoutResult result = new LayoutResult();
+        for (int run = 0; run < 10; run++) {
+            layout.layout(items, new Rect(0, 0, WIDTH, HEIGHT), result);
+        }
+        assertEquals(nbItems, result.size());
+        TestMapItem first = items.get(0);
+        assertEquals(first.getSize(), first.getBounds().getWidth() * first.getBounds().getHeight(), first.getSize() * AREA_TOLERANCE);
+    }
+
+    /**
+     * Test of layout method, of class TreeMapLayout, on a 100k items model.
+     */
+    @Test(timeout = 20000)
+    public void testLayoutLargeModel() {
+        final int nbItems = 100_000;
+        Random random = new Random(13);
+        List<MapData> children = new ArrayList<>(nbItems);
+        for (int i = 0; i < nbItems; i++) {
+            children.add(new ConcreteMapData(Math.exp(random.nextGaussian() * 2)));
+        }
+        CanvasMapModel model = new CanvasMapModel(new ConcreteMapData("root", children), WIDTH, HEIGHT);
+        assertTrue(model.getItems() instanceof RandomAccess);
+        TreeMapLayout layout = new TreeMapLayout();
+        for (int run = 0; run < 10; run++) {
+            layout.layout(model, new Rect(0, 0, WIDTH, HEIGHT), model.getLayoutResult());
+        }
+        double totalArea = 0;
+        for (MapItem item : model.getItems()) {
+            totalArea += item.getBounds().getWidth() * item.getBounds().getHeight();
+        }
+        assertEquals(WIDTH * HEIGHT, totalArea, WIDTH * HEIGHT * AREA_TOLERANCE);
+    }
+
+    /**
+     * Test of layout method, of class TreeMapLayout, on a single level of a
+     * million items, most of them being laid out in a row of their own.
+     */
+    @Test
+    public void testLayoutMillionItems() {
+        final int nbItems = 1_000_000;
+        List<TestMapItem> items = new ArrayList<>(nbItems);
+        double size = WIDTH * HEIGHT / 2;
+        for (int i = 0; i < nbItems; i++) {
+            // halving sizes ends in a long tail of zero sized items
+            items.add(new TestMapItem(size));
+            size /= 2;
+        }
+        new TreeMapLayout().layout(items, new Rect(0, 0, WIDTH, HEIGHT));
+        Rect first = items.get(0).getBounds();
+        assertEquals(items.get(0).getSize(), first.getWidth() * first.getHeight(), items.get(0).getSize() * AREA_TOLERANCE);
+        //
+        List<TestMapItem> randomItems = createItems(nbItems, new Random(3));
+        new TreeMapLayout().layout(randomItems, new Rect(0, 0, WIDTH, HEIGHT));
+        double totalArea = 0;
+        for (TestMapItem item : randomItems) {
+            totalArea += item.getBounds().getWidth() * item.getBounds().getHeight();
+        }
+        assertEquals(WIDTH * HEIGHT, totalArea, WIDTH * HEIGHT * AREA_TOLERANCE);
+    }
+
+    /**
+     * Test of layout method, of class TreeMapLayout: empty and NaN items are
+     * skipped, the other ones being laid out as if they were alone.
+     */
+    @Test
+    public void testLayoutSkipsEmptyItems() {
+        List<TestMapItem> items = createItems(300, new Random(21));
+        List<TestMapItem> positiveItems = new ArrayList<>();
+        List<TestMapItem> withEmptyItems = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            withEmptyItems.add(new TestMapItem(i % 3 == 0 ? Double.NaN : 0));
+            TestMapItem item = items.get(i);
+            positiveItems.add(item);
+            withEmptyItems.add(new TestMapItem(item.getSize()));
+        }
+        Rect bounds = new Rect(10, 20, WIDTH, HEIGHT);
+        new TreeMapLayout().layout(positiveItems, bounds);
+        LayoutResult result = new TreeMapLayout().layout(withEmptyItems, bounds, new LayoutResult());
+        assertEquals(items.size(), result.getSkippedCount());
+        for (int i = 0; i < items.size(); i++) {
+            assertTrue(result.isSkipped(2 * i));
+            Rect empty = withEmptyItems.get(2 * i).getBounds();
+            assertEquals(0, empty.getWidth() * empty.getHeight(), 0);
+            assertFalse(result.isSkipped(2 * i + 1));
+            assertSameBounds(positiveItems.get(i).getBounds(), withEmptyItems.get(2 * i + 1).getBounds());
+        }
+        // only empty items
+        List<TestMapItem> emptyItems = List.of(new TestMapItem(0), new TestMapItem(Double.NaN));
+        assertEquals(2, new TreeMapLayout().layout(emptyItems, bounds, result).getSkippedCount());
+        assertEquals(bounds.getX(), emptyItems.get(1).getBounds().getX(), 0);
+    }
+
+    /**
+     * Test of the deprecated layoutRow and highestAspect methods, of class
+     * TreeMapLayout: a row takes its share of the bounds along the shortest
+     * side.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testLayoutRow() {
+        MapItem[] items = {new TestMapItem(WIDTH * HEIGHT / 4), new TestMapItem(WIDTH * HEIGHT / 4), new TestMapItem(WIDTH * HEIGHT / 2)};
+        Rect bounds = new Rect(10, 20, WIDTH, HEIGHT);
+        TreeMapLayout layout = new TreeMapLayout();
+        Rect remaining = layout.layoutRow(items, 0, 1, bounds);
+        assertSameBounds(new Rect(10, 20, WIDTH / 2, HEIGHT / 2), items[0].getBounds());
+        assertSameBounds(new Rect(10, 20 + HEIGHT / 2, WIDTH / 2, HEIGHT / 2), items[1].getBounds());
+        assertSameBounds(new Rect(10 + WIDTH / 2, 20, WIDTH / 2, HEIGHT), remaining);
+        assertEquals(WIDTH / HEIGHT, layout.highestAspect(items, 0, 1, bounds), TreeMapUtils.EPSILON);
+        assertEquals(2 * HEIGHT / WIDTH, layout.highestAspect(items, 2, 2, remaining), TreeMapUtils.EPSILON);
+    }
+
+    private static List<TestMapItem> createItems(int nbItems, Random random) {
+        double[] values = new double[nbItems];
+        double total = 0;
+        for (int i = 0; i < nbItems; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 2);
+            total += values[i];
+        }
+        List<TestMapItem> items = new ArrayList<>(nbItems);
+        for (int i = 0; i < nbItems; i++) {
+            items.add(new TestMapItem(values[i] / total * WIDTH * HEIGHT));
+        }
+        return items;
+    }
+
+    private static List<TestMapItem> copy(List<TestMapItem> items) {
+        List<TestMapItem> copy = new ArrayList<>(items.size());
+        items.forEach(item -> copy.add(new TestMapItem(item.getSize())));
+        return copy;
+    }
+
+    private static void assertSameBounds(Rect expected, Rect actual) {
+        assertEquals(expected.getX(), actual.getX(), TreeMapUtils.EPSILON);
+        assertEquals(expected.getY(), actual.getY(), TreeMapUtils.EPSILON);
+        assertEquals(expected.getWidth(), actual.getWidth(), TreeMapUtils.EPSILON);
+        assertEquals(expected.getHeight(), actual.getHeight(), TreeMapUtils.EPSILON);
+    }
+}
@@ -23,6 +23,8 @@
  */
 package com.github.ptitnoony.components.fxtreemap;
 
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -57,4 +59,106 @@ public class TreeMapUtilsTest {
         }
     }
 
+    /**
+     * Test of quickSortDesc method, of class TreeMapUtils: only the given
+     * range is sorted, NaN sizes last.
+     */
+    @Test
+    public void testQuickSortDescRange() {
+        double[] sizes = {1, 2, Double.NaN, 3, 4, 0, 5};
+        MapItem[] data = new MapItem[sizes.length];
+        for (int k = 0; k < sizes.length; k++) {
+            data[k] = new TestMapItem(sizes[k]);
+        }
+        MapItem first = data[0];
+        MapItem last = data[6];
+        Assert.assertTrue(TreeMapUtils.quickSortDesc(data, 1, 5));
+        Assert.assertSame(first, data[0]);
+        Assert.assertSame(last, data[6]);
+        double[] expected = {4, 3, 2, 0};
+        for (int k = 0; k < expected.length; k++) {
+            Assert.assertEquals(expected[k], data[k + 1].getSize(), 0);
+        }
+        Assert.assertTrue(Double.isNaN(data[5].getSize()));
+    }
+
+    /**
+     * Test of quickSortDesc method, of class TreeMapUtils, on a million items
+     * ordered in ways that would make a quick sort go deep.
+     */
+    @Test
+    public void testQuickSortDescMillionItems() {
+        final int nbItems = 1_000_000;
+        IntToDoubleFunction[] orders = {
+            i -> i,
+            i -> nbItems - i,
+            i -> 1.0,
+            i -> i % 3,
+            // organ pipe
+            i -> i < nbItems / 2 ? i : nbItems - i
+        };
+        for (IntToDoubleFunction order : orders) {
+            MapItem[] data = new MapItem[nbItems];
+            for (int k = 0; k < nbItems; k++) {
+                data[k] = new TestMapItem(order.applyAsDouble(k));
+            }
+            Assert.assertTrue(TreeMapUtils.quickSortDesc(data, 0, nbItems - 1));
+            for (int j = 0; j < nbItems - 1; j++) {
+                Assert.assertTrue(data[j].getSize() >= data[j + 1].getSize());
+            }
+        }
+    }
+
+    /**
+     * Test of sortDescending method, of class TreeMapUtils, on random keys,
+     * small ranges and orders known to defeat median of three pivots.
+     */
+    @Test
+    public void testSortDescending() {
+        Random random = new Random(11);
+        for (int i = 0; i < 300; i++) {
+            double[] keys = new double[i];
+            for (int k = 0; k < i; k++) {
+                keys[k] = random.nextInt(4) == 0 ? random.nextInt(3) : random.nextDouble();
+            }
+            assertSortedPermutation(keys);
+        }
+        final int nbItems = 1_000_000;
+        IntToDoubleFunction[] orders = {
+            i -> i,
+            i -> nbItems - i,
+            i -> 1.0,
+            i -> i % 3,
+            // organ pipe
+            i -> i < nbItems / 2 ? i : nbItems - i,
+            // sawtooth
+            i -> i % 1024,
+            i -> random.nextDouble()
+        };
+        for (IntToDoubleFunction order : orders) {
+            double[] keys = new double[nbItems];
+            for (int k = 0; k < nbItems; k++) {
+                keys[k] = order.applyAsDouble(k);
+            }
+            assertSortedPermutation(keys);
+        }
+    }
+
+    private static void assertSortedPermutation(double[] keys) {
+        int[] indices = new int[keys.length];
+        for (int k = 0; k < keys.length; k++) {
+            indices[k] = k;
+        }
+        boolean isSorted = TreeMapUtils.sortDescending(keys, indices, 0, keys.length - 1);
+        Assert.assertEquals(keys.length > 1, isSorted);
+        boolean[] seen = new boolean[keys.length];
+        for (int k = 0; k < keys.length; k++) {
+            Assert.assertFalse(seen[indices[k]]);
+            seen[indices[k]] = true;
+            if (k > 0) {
+                Assert.assertTrue(keys[indices[k - 1]] >= keys[indices[k]]);
+            }
+        }
+    }
+
 }